@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// precomputed ancestor labels for a rooted DAG. for every vertex v we store
+// every ancestor of v (v included) together with its bfs distance from v,
+// packed as (ancestor << 32) | distance and sorted by ancestor. the shortest
+// common ancestor of v and w is then a linear merge of their two labels, with
+// no graph traversal at query time. after an edit to the digraph, update()
+// recomputes only the labels of the vertices whose ancestors changed and
+// keeps them beside the untouched packed arrays
+class AncestorLabels {
+
+    // past this fraction of the vertices, update() rebuilds every label
+    private static final int REBUILD_FRACTION = 4;
+
+    // offsets[v] = index of v's first label entry in labels
+    private final int[] offsets;
+
+    // packed (ancestor, distance) pairs, grouped by vertex, sorted by ancestor
+    private final long[] labels;
+
+    // vertices whose labels were recomputed by update(), sorted, and their
+    // new labels; a vertex added after the build is always among them
+    private final int[] changed;
+    private final long[][] changedLabels;
+
+    // builds the labels of every vertex of G, one bfs per vertex, spread
+    // across the common fork-join pool
+    AncestorLabels(IntDigraph G) {
+        int numOfVertices = G.V();
+        ContextPool contexts = new ContextPool(numOfVertices);
+        long[][] perVertex = new long[numOfVertices][];
+        IntStream.range(0, numOfVertices).parallel().forEach(v -> {
+            SearchContext ctx = contexts.borrow();
+            perVertex[v] = closure(G, ctx, v);
+            contexts.release(ctx);
+        });
+        offsets = new int[numOfVertices + 1];
+        for (int v = 0; v < numOfVertices; v++) {
+            offsets[v + 1] = offsets[v] + perVertex[v].length;
+        }
+        labels = new long[offsets[numOfVertices]];
+        IntStream.range(0, numOfVertices).parallel().forEach(
+                v -> System.arraycopy(perVertex[v], 0, labels, offsets[v],
+                                      perVertex[v].length));
+        changed = new int[0];
+        changedLabels = new long[0][];
+    }
+
+    // helper constructor for the labels of an edited digraph
+    private AncestorLabels(int[] offsets, long[] labels, int[] changed,
+                           long[][] changedLabels) {
+        this.offsets = offsets;
+        this.labels = labels;
+        this.changed = changed;
+        this.changedLabels = changedLabels;
+    }
+
+    // the labels of G, an edited version of the digraph these labels were
+    // built for, in which only the vertices in affected (every vertex whose
+    // set of ancestors or their distances may have changed, and every new
+    // vertex) need new labels. those are recomputed in parallel, with
+    // contexts borrowed from contexts, which must fit G; if they grow past a
+    // fraction of the digraph, every label is rebuilt instead
+    AncestorLabels update(IntDigraph G, int[] affected, ContextPool contexts) {
+        int[] vertices = affected.clone();
+        Arrays.sort(vertices);
+        int[] merged = new int[changed.length + vertices.length];
+        int count = 0;
+        for (int i = 0, j = 0; i < changed.length || j < vertices.length; ) {
+            int v = j == vertices.length || (i < changed.length && changed[i] < vertices[j])
+                    ? changed[i++] : vertices[j++];
+            if (count == 0 || merged[count - 1] != v) {
+                merged[count++] = v;
+            }
+        }
+        if ((long) count * REBUILD_FRACTION > G.V()) {
+            return new AncestorLabels(G);
+        }
+        int[] next = Arrays.copyOf(merged, count);
+        long[][] nextLabels = new long[count][];
+        IntStream.range(0, count).parallel().forEach(k -> {
+            int v = next[k];
+            if (Arrays.binarySearch(vertices, v) < 0) {
+                nextLabels[k] = changedLabels[Arrays.binarySearch(changed, v)];
+                return;
+            }
+            SearchContext ctx = contexts.borrow();
+            nextLabels[k] = closure(G, ctx, v);
+            contexts.release(ctx);
+        });
+        return new AncestorLabels(offsets, labels, next, nextLabels);
+    }
+
+    // helper method that runs a full bfs from v and returns its sorted label
+    private static long[] closure(IntDigraph G, SearchContext ctx, int v) {
+        ctx.reset(v);
+        ctx.seedA(v);
+        return closure(G, ctx);
+    }
+
+    // runs a full bfs from the sources already seeded into ctx.a and returns
+    // every vertex it reaches with its distance, packed and sorted like a label
+    static long[] closure(IntDigraph G, SearchContext ctx) {
+        SearchContext.Frontier f = ctx.a;
+        while (!f.isEmpty()) {
+            int i = f.queue[f.head++];
+            int last = G.lastEdge(i);
+            for (int e = G.firstEdge(i); e < last; e++) {
+                int a = G.target(e);
+                if (!f.reached(a)) {
+                    f.visit(a, f.dist[i] + 1, i);
+                }
+            }
+        }
+        long[] label = new long[f.tail];
+        for (int k = 0; k < f.tail; k++) {
+            int a = f.queue[k];
+            label[k] = ((long) a << 32) | f.dist[a];
+        }
+        Arrays.sort(label);
+        return label;
+    }
+
+    // merges the labels of v and w, recording any common ancestor that beats
+    // ctx's best so far in ctx.length and ctx.ancestor
+    void meet(int v, int w, SearchContext ctx) {
+        long best = PairCache.pack(ctx.length, ctx.ancestor);
+        if (changed.length == 0) {
+            best = meet(labels, offsets[v], offsets[v + 1],
+                        labels, offsets[w], offsets[w + 1], best);
+        }
+        else {
+            int i = Arrays.binarySearch(changed, v);
+            int j = Arrays.binarySearch(changed, w);
+            long[] x = i < 0 ? labels : changedLabels[i];
+            long[] y = j < 0 ? labels : changedLabels[j];
+            best = meet(x, i < 0 ? offsets[v] : 0, i < 0 ? offsets[v + 1] : x.length,
+                        y, j < 0 ? offsets[w] : 0, j < 0 ? offsets[w + 1] : y.length,
+                        best);
+        }
+        ctx.length = PairCache.length(best);
+        ctx.ancestor = PairCache.ancestor(best);
+    }
+
+    // merges x[i..endX) with y[j..endY), two sorted labels, and returns the
+    // common ancestor with the smallest total distance packed with
+    // PairCache.pack(), or best if none beats it
+    static long meet(long[] x, int i, int endX, long[] y, int j, int endY,
+                     long best) {
+        int shortest = PairCache.length(best);
+        while (i < endX && j < endY) {
+            int a = (int) (x[i] >>> 32);
+            int b = (int) (y[j] >>> 32);
+            if (a < b) {
+                i++;
+            }
+            else if (a > b) {
+                j++;
+            }
+            else {
+                int currDistance = (int) x[i] + (int) y[j];
+                if (currDistance < shortest) {
+                    shortest = currDistance;
+                    best = PairCache.pack(currDistance, a);
+                }
+                i++;
+                j++;
+            }
+        }
+        return best;
+    }
+
+    // total number of (ancestor, distance) pairs, counting the replaced
+    // labels of changed vertices as well
+    long size() {
+        long size = labels.length;
+        for (long[] label : changedLabels) {
+            size += label.length;
+        }
+        return size;
+    }
+
+    // bytes used by the label arrays
+    long bytes() {
+        long bytes = 4L * offsets.length + 8L * labels.length + 4L * changed.length;
+        for (long[] label : changedLabels) {
+            bytes += 8L * label.length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+// the answer to one shortest common ancestor query in a single object: the
+// length of the shortest ancestral path, the shortest common ancestor, the
+// ancestor's synset when the query came through WordNet, and optionally the
+// two halves of the path itself. pathA() climbs from a vertex of the first
+// subset up to the ancestor and pathB() from a vertex of the second subset,
+// both ending at the ancestor, so length() == pathA().length - 1 +
+// pathB().length - 1. immutable
+public final class AncestralPath {
+
+    private final int length;
+    private final int ancestor;
+    private final String synset;
+
+    // the two halves of the path, or null if they weren't asked for
+    private final int[] pathA;
+    private final int[] pathB;
+
+    // constructor takes the parts of the answer; synset, pathA and pathB may
+    // be null. the arrays are not copied
+    AncestralPath(int length, int ancestor, String synset, int[] pathA, int[] pathB) {
+        this.length = length;
+        this.ancestor = ancestor;
+        this.synset = synset;
+        this.pathA = pathA;
+        this.pathB = pathB;
+    }
+
+    // same answer with the ancestor's synset filled in
+    AncestralPath withSynset(String synset) {
+        return new AncestralPath(length, ancestor, synset, pathA, pathB);
+    }
+
+    // same answer with the two halves of the path swapped
+    AncestralPath reversed() {
+        return new AncestralPath(length, ancestor, synset, pathB, pathA);
+    }
+
+    // length of the shortest ancestral path
+    public int length() {
+        return length;
+    }
+
+    // id of the shortest common ancestor
+    public int ancestor() {
+        return ancestor;
+    }
+
+    // synset of the shortest common ancestor, or null if the query was asked
+    // of a ShortestCommonAncestor directly
+    public String synset() {
+        return synset;
+    }
+
+    // true if the query asked for the path vertices
+    public boolean hasPath() {
+        return pathA != null;
+    }
+
+    // vertices from a vertex of the first subset up to the ancestor, both
+    // included, or null if the path wasn't asked for
+    public int[] pathA() {
+        return pathA == null ? null : pathA.clone();
+    }
+
+    // vertices from a vertex of the second subset up to the ancestor, both
+    // included, or null if the path wasn't asked for
+    public int[] pathB() {
+        return pathB == null ? null : pathB.clone();
+    }
+
+    public boolean equals(Object other) {
+        if (!(other instanceof AncestralPath)) {
+            return false;
+        }
+        AncestralPath that = (AncestralPath) other;
+        return length == that.length && ancestor == that.ancestor
+                && (synset == null ? that.synset == null : synset.equals(that.synset))
+                && Arrays.equals(pathA, that.pathA) && Arrays.equals(pathB, that.pathB);
+    }
+
+    public int hashCode() {
+        return 31 * (31 * length + ancestor) + Arrays.hashCode(pathA)
+                + 17 * Arrays.hashCode(pathB);
+    }
+
+    // for example "length 3, ancestor 7 (entity): 1 -> 4 -> 7 <- 2"
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append("length ").append(length).append(", ancestor ").append(ancestor);
+        if (synset != null) {
+            s.append(" (").append(synset).append(')');
+        }
+        if (pathA != null) {
+            s.append(':');
+            for (int i = 0; i < pathA.length; i++) {
+                s.append(i == 0 ? " " : " -> ").append(pathA[i]);
+            }
+            for (int i = pathB.length - 2; i >= 0; i--) {
+                s.append(" <- ").append(pathB[i]);
+            }
+        }
+        return s.toString();
+    }
+}
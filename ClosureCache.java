@@ -0,0 +1,196 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+// bounded, thread-safe cache of ancestor closures keyed by noun id: for each
+// cached noun, every ancestor of its synsets with its distance, packed and
+// sorted the way ShortestCommonAncestor.closure() returns them. a query on a
+// cached noun only merges closures instead of starting a multi-source search
+// from every synset of the noun. only nouns with at least minSynsets synsets
+// are admitted, so the capacity goes to the polysemous nouns whose searches
+// cost the most. least recently used nouns are evicted first, and the cache
+// is split into independently locked segments like PairCache
+public class ClosureCache {
+
+    // most segments we split the cache into
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final int minSynsets;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // constructor takes the most nouns to keep and the fewest synsets a noun
+    // needs to be cached
+    public ClosureCache(int capacity, int minSynsets) {
+        if (capacity < 1 || minSynsets < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.minSynsets = minSynsets;
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+    }
+
+    // true if a noun with this many synsets may be cached
+    public boolean admits(int synsets) {
+        return synsets >= minSynsets;
+    }
+
+    // the closure cached for noun id k, or null
+    long[] get(int k) {
+        long[] closure = segmentFor(k).get(k);
+        if (closure == null) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+        }
+        return closure;
+    }
+
+    // caches the closure of noun id k, evicting another noun if the segment is
+    // full. closure must never be modified afterwards
+    void put(int k, long[] closure) {
+        if (segmentFor(k).put(k, closure)) {
+            evictions.increment();
+        }
+    }
+
+    // a new cache with the same settings and counters holding the closures of
+    // this one under new noun ids: the closure of noun id k is kept as
+    // newId(k), or dropped if that is negative. like PairCache.without(),
+    // it lets a WordNet edit keep every closure it did not change, even when
+    // a new noun shifts the ids after it
+    ClosureCache remap(IntUnaryOperator newId) {
+        ClosureCache copy = new ClosureCache(capacity, minSynsets);
+        copy.hits.add(hits.sum());
+        copy.misses.add(misses.sum());
+        copy.evictions.add(evictions.sum());
+        for (Segment segment : segments) {
+            segment.copyTo(copy, newId);
+        }
+        return copy;
+    }
+
+    // removes every cached closure
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    // number of nouns currently cached
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // bytes held by the cached closures, not counting the map entries
+    public long bytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.bytes();
+        }
+        return bytes;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int minSynsets() {
+        return minSynsets;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public String toString() {
+        return "closure cache: " + size() + "/" + capacity + " nouns with "
+                + minSynsets + "+ synsets, " + bytes() + " bytes, " + hits()
+                + " hits, " + misses() + " misses, " + evictions() + " evictions";
+    }
+
+    // helper method that picks the segment for noun id k
+    private Segment segmentFor(int k) {
+        int h = k * 0x9E3779B9;
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    // one independently locked part of the cache, a LinkedHashMap in access
+    // order
+    private static final class Segment {
+        private final int capacity;
+        private final LinkedHashMap<Integer, long[]> map =
+                new LinkedHashMap<Integer, long[]>(16, 0.75f, true);
+        // total closure entries held, for bytes()
+        private long entries;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized long[] get(int k) {
+            return map.get(k);
+        }
+
+        // returns true if another noun was evicted to make room
+        synchronized boolean put(int k, long[] closure) {
+            long[] old = map.put(k, closure);
+            entries += closure.length - (old == null ? 0 : old.length);
+            if (map.size() > capacity) {
+                Iterator<Map.Entry<Integer, long[]>> eldest = map.entrySet().iterator();
+                entries -= eldest.next().getValue().length;
+                eldest.remove();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void clear() {
+            map.clear();
+            entries = 0;
+        }
+
+        // puts every closure that newId keeps into target, least recently
+        // used first
+        synchronized void copyTo(ClosureCache target, IntUnaryOperator newId) {
+            for (Map.Entry<Integer, long[]> entry : map.entrySet()) {
+                int k = newId.applyAsInt(entry.getKey());
+                if (k >= 0) {
+                    target.segmentFor(k).put(k, entry.getValue());
+                }
+            }
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized long bytes() {
+            return 8 * entries;
+        }
+    }
+}
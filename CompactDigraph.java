@@ -0,0 +1,336 @@
+/******************************************************************************
+ *  Compilation:  javac CompactDigraph.java
+ *  Execution:    java CompactDigraph filename.txt
+ *  Dependencies: Digraph.java IntDigraph.java In.java
+ *
+ *  An immutable digraph, implemented using compressed sparse rows.
+ *
+ *  % java CompactDigraph tinyDG.txt
+ *  13 vertices, 22 edges
+ *  0: 5 1
+ *  1:
+ *  ...
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+
+import java.util.function.IntConsumer;
+
+
+/**
+ * The {@code CompactDigraph} class represents an immutable directed graph of
+ * vertices named 0 through <em>V</em> - 1.
+ * It supports iterating over all of the vertices adjacent from a given vertex,
+ * either with a primitive {@link #forEachAdj(int, IntConsumer)} callback or by
+ * edge index through {@link #firstEdge(int)}, {@link #lastEdge(int)} and
+ * {@link #target(int)}, none of which box a vertex.
+ * It also provides methods for returning the indegree or outdegree of a vertex,
+ * the number of vertices <em>V</em> in the digraph,
+ * the number of edges <em>E</em> in the digraph, and the reverse digraph.
+ * <p>
+ * This implementation uses a <em>compressed sparse row</em> representation:
+ * the heads of the edges leaving vertex <em>v</em> are stored contiguously in
+ * {@code targets[offsets[v]]} through {@code targets[offsets[v + 1] - 1]}.
+ * It uses 4(<em>E</em> + 2<em>V</em> + 1) bytes of array data, compared to the
+ * boxed adjacency sets of {@link Digraph}, and walking an adjacency list reads
+ * consecutive ints.
+ * The <code>reverse()</code> method takes &Theta;(<em>E</em> + <em>V</em>) time
+ * and space; all other instance methods take &Theta;(1) time.
+ * Constructing a compact digraph from a {@link Digraph} takes
+ * &Theta;(<em>E</em> + <em>V</em>) time.
+ */
+
+public class CompactDigraph implements IntDigraph {
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    private final int[] offsets;   // offsets[v] = index of v's first edge in targets
+    private final int[] targets;   // targets[e] = head vertex of edge e
+    private final int[] indegree;  // indegree[v] = indegree of vertex v
+
+    /**
+     * Initializes a compact digraph that is a copy of the specified digraph.
+     *
+     * @param G the digraph to copy
+     * @throws IllegalArgumentException if {@code G} is {@code null}
+     */
+    public CompactDigraph(Digraph G) {
+        this(rows(G));
+    }
+
+    /**
+     * Initializes a compact digraph that is a copy of the specified digraph,
+     * such as an {@code OverlayDigraph} whose edits should be folded in.
+     *
+     * @param G the digraph to copy
+     * @throws IllegalArgumentException if {@code G} is {@code null}
+     */
+    public CompactDigraph(IntDigraph G) {
+        this(rows(G));
+    }
+
+    // the adjacency lists of a digraph to copy, whatever its class
+    private interface Rows {
+        int V();
+        int outdegree(int v);
+        void forEachAdj(int v, IntConsumer action);
+    }
+
+    // helper constructor that lays out the rows of G; both copy constructors
+    // share it
+    private CompactDigraph(Rows G) {
+        int numOfVertices = G.V();
+        int[] rowOffsets = new int[numOfVertices + 1];
+        for (int v = 0; v < numOfVertices; v++) {
+            rowOffsets[v + 1] = rowOffsets[v] + G.outdegree(v);
+        }
+        int[] heads = new int[rowOffsets[numOfVertices]];
+        int[] degrees = new int[numOfVertices];
+        int[] next = new int[1];
+        for (int v = 0; v < numOfVertices; v++) {
+            next[0] = rowOffsets[v];
+            G.forEachAdj(v, w -> {
+                heads[next[0]++] = w;
+                degrees[w]++;
+            });
+        }
+        this.offsets = rowOffsets;
+        this.targets = heads;
+        this.indegree = degrees;
+    }
+
+    // helper method that reads a Digraph as rows
+    private static Rows rows(Digraph G) {
+        if (G == null) throw new IllegalArgumentException("argument is null");
+        return new Rows() {
+            public int V() {
+                return G.V();
+            }
+
+            public int outdegree(int v) {
+                return G.outdegree(v);
+            }
+
+            public void forEachAdj(int v, IntConsumer action) {
+                for (int w : G.adj(v)) {
+                    action.accept(w);
+                }
+            }
+        };
+    }
+
+    // helper method that reads an IntDigraph as rows
+    private static Rows rows(IntDigraph G) {
+        if (G == null) throw new IllegalArgumentException("argument is null");
+        return new Rows() {
+            public int V() {
+                return G.V();
+            }
+
+            public int outdegree(int v) {
+                return G.outdegree(v);
+            }
+
+            public void forEachAdj(int v, IntConsumer action) {
+                int last = G.lastEdge(v);
+                for (int e = G.firstEdge(v); e < last; e++) {
+                    action.accept(G.target(e));
+                }
+            }
+        };
+    }
+
+    /**
+     * Initializes a compact digraph directly from its compressed sparse rows.
+     * The arrays are used as they are, not copied.
+     *
+     * @param offsets the {@code V + 1} row offsets into {@code targets}
+     * @param targets the head vertex of every edge, grouped by tail vertex
+     * @throws IllegalArgumentException if the arrays do not describe a digraph
+     */
+    CompactDigraph(int[] offsets, int[] targets) {
+        if (offsets == null || targets == null)
+            throw new IllegalArgumentException("argument is null");
+        if (offsets.length == 0 || offsets[0] != 0
+                || offsets[offsets.length - 1] != targets.length)
+            throw new IllegalArgumentException("offsets do not cover targets");
+        int numOfVertices = offsets.length - 1;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.indegree = new int[numOfVertices];
+        for (int v = 0; v < numOfVertices; v++) {
+            if (offsets[v] > offsets[v + 1])
+                throw new IllegalArgumentException("offsets are not sorted");
+        }
+        for (int w : targets) {
+            if (w < 0 || w >= numOfVertices)
+                throw new IllegalArgumentException(
+                        "vertex " + w + " is not between 0 and " + (numOfVertices - 1));
+            indegree[w]++;
+        }
+    }
+
+    /**
+     * Returns the number of vertices in this digraph.
+     *
+     * @return the number of vertices in this digraph
+     */
+    public int V() {
+        return indegree.length;
+    }
+
+    /**
+     * Returns the number of edges in this digraph.
+     *
+     * @return the number of edges in this digraph
+     */
+    public int E() {
+        return targets.length;
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= indegree.length)
+            throw new IllegalArgumentException(
+                    "vertex " + v + " is not between 0 and " + (indegree.length - 1));
+    }
+
+    /**
+     * Returns the index of the first edge leaving vertex {@code v}. The edges
+     * leaving {@code v} are {@code firstEdge(v)} through {@code lastEdge(v) - 1}.
+     *
+     * @param v the vertex
+     * @return the index of the first edge leaving {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int firstEdge(int v) {
+        validateVertex(v);
+        return offsets[v];
+    }
+
+    /**
+     * Returns one past the index of the last edge leaving vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return one past the index of the last edge leaving {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int lastEdge(int v) {
+        validateVertex(v);
+        return offsets[v + 1];
+    }
+
+    /**
+     * Returns the head vertex of edge {@code e}.
+     *
+     * @param e the edge index
+     * @return the vertex that edge {@code e} points to
+     * @throws ArrayIndexOutOfBoundsException unless {@code 0 <= e < E}
+     */
+    public int target(int e) {
+        return targets[e];
+    }
+
+    /**
+     * Calls {@code action} with every vertex adjacent from vertex {@code v}.
+     *
+     * @param v      the vertex
+     * @param action the callback
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public void forEachAdj(int v, IntConsumer action) {
+        validateVertex(v);
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            action.accept(targets[e]);
+        }
+    }
+
+    /**
+     * Returns the number of directed edges incident from vertex {@code v}.
+     * This is known as the <em>outdegree</em> of vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return the outdegree of vertex {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int outdegree(int v) {
+        validateVertex(v);
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * Returns the number of directed edges incident to vertex {@code v}.
+     * This is known as the <em>indegree</em> of vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return the indegree of vertex {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int indegree(int v) {
+        validateVertex(v);
+        return indegree[v];
+    }
+
+    /**
+     * Returns the reverse of the digraph.
+     *
+     * @return the reverse of the digraph
+     */
+    public CompactDigraph reverse() {
+        int numOfVertices = indegree.length;
+        int[] reverseOffsets = new int[numOfVertices + 1];
+        for (int v = 0; v < numOfVertices; v++) {
+            reverseOffsets[v + 1] = reverseOffsets[v] + indegree[v];
+        }
+        int[] reverseTargets = new int[targets.length];
+        int[] next = new int[numOfVertices];
+        System.arraycopy(reverseOffsets, 0, next, 0, numOfVertices);
+        for (int v = 0; v < numOfVertices; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                reverseTargets[next[targets[e]]++] = v;
+            }
+        }
+        return new CompactDigraph(reverseOffsets, reverseTargets);
+    }
+
+    /**
+     * Returns the number of bytes used by the arrays of this digraph.
+     *
+     * @return the bytes used by the offset, target and indegree arrays
+     */
+    public long bytes() {
+        return 4L * (offsets.length + targets.length + indegree.length);
+    }
+
+    /**
+     * Returns a string representation of the graph.
+     *
+     * @return the number of vertices <em>V</em>, followed by the number of edges <em>E</em>,
+     * followed by the <em>V</em> adjacency lists
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append(V() + " vertices, " + E() + " edges " + NEWLINE);
+        for (int v = 0; v < V(); v++) {
+            s.append(String.format("%d: ", v));
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                s.append(String.format("%d ", targets[e]));
+            }
+            s.append(NEWLINE);
+        }
+        return s.toString();
+    }
+
+    /**
+     * Unit tests the {@code CompactDigraph} data type.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        CompactDigraph G = new CompactDigraph(new Digraph(in));
+        System.out.println(G);
+        System.out.println(G.reverse().reverse().E() == G.E());
+    }
+
+}
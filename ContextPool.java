@@ -0,0 +1,73 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// lock-free pool of SearchContexts for one digraph. a caller borrows a context
+// for the length of one query and gives it back afterwards. unlike a
+// ThreadLocal, the number of contexts is bounded by how many queries actually
+// run at once, not by how many threads ever ran one, so short-lived virtual
+// threads don't each pay for a fresh set of vertex-sized arrays. a context
+// sized for more vertices than a digraph has works for it just as well, so
+// one pool can serve an edited digraph that grew, or many overlays over the
+// same base: grow() raises the size, and smaller idle contexts are dropped
+// as they are borrowed
+class ContextPool {
+
+    // number of vertices every context is sized for at least; only grows
+    private volatile int numOfVertices;
+
+    // idle contexts; an empty slot holds null
+    private final AtomicReferenceArray<SearchContext> slots;
+
+    ContextPool(int numOfVertices) {
+        this.numOfVertices = numOfVertices;
+        int processors = Runtime.getRuntime().availableProcessors();
+        // a power of two, so that a probe is just a mask
+        this.slots = new AtomicReferenceArray<SearchContext>(
+                Integer.highestOneBit(Math.max(1, processors)) * 4);
+    }
+
+    // takes an idle context, or creates one if every slot is empty
+    SearchContext borrow() {
+        int size = numOfVertices;
+        int mask = slots.length() - 1;
+        int start = probe();
+        for (int k = 0; k <= mask; k++) {
+            int i = (start + k) & mask;
+            SearchContext ctx = slots.get(i);
+            if (ctx != null && slots.compareAndSet(i, ctx, null)
+                    && ctx.capacity() >= size) {
+                return ctx;
+            }
+        }
+        return new SearchContext(size);
+    }
+
+    // makes every context borrowed from now on fit a digraph of at least
+    // numOfVertices vertices, and returns this pool. a pool that has to grow
+    // leaves some headroom, so a digraph gaining one vertex at a time does
+    // not replace every context on each edit
+    synchronized ContextPool grow(int numOfVertices) {
+        if (numOfVertices > this.numOfVertices) {
+            this.numOfVertices = numOfVertices + (numOfVertices >>> 6) + 64;
+        }
+        return this;
+    }
+
+    // returns ctx to the pool; it is dropped if every slot is already full
+    void release(SearchContext ctx) {
+        int mask = slots.length() - 1;
+        int start = probe();
+        for (int k = 0; k <= mask; k++) {
+            int i = (start + k) & mask;
+            if (slots.get(i) == null && slots.compareAndSet(i, null, ctx)) {
+                return;
+            }
+        }
+    }
+
+    // helper method that spreads threads over different starting slots
+    private static int probe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
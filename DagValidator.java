@@ -0,0 +1,208 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+// checks that a digraph is a rooted DAG: acyclic, with exactly one vertex of
+// outdegree zero (the root). every check is iterative, with its own int
+// stack or queue, so a hypernym chain millions of vertices deep does not
+// overflow the thread stack. a digraph that fails is rejected with an
+// InvalidDagException naming the extra roots or one cycle
+public final class DagValidator {
+
+    // frontiers smaller than this are peeled on the calling thread, since
+    // splitting them costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    // dfs colors: not yet visited, on the current dfs path, finished
+    private static final byte WHITE = 0;
+    private static final byte GRAY = 1;
+    private static final byte BLACK = 2;
+
+    private DagValidator() { }
+
+    // thrown when a digraph is not a rooted DAG. exactly one of roots() and
+    // cycle() is non-empty
+    public static final class InvalidDagException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] roots;
+        private final int[] cycle;
+
+        private InvalidDagException(String message, int[] roots, int[] cycle) {
+            super(message);
+            this.roots = roots;
+            this.cycle = cycle;
+        }
+
+        // every vertex of outdegree zero, if there is more than one
+        public int[] roots() {
+            return roots.clone();
+        }
+
+        // the vertices of one directed cycle in order, with the first vertex
+        // repeated at the end, if the digraph has a cycle
+        public int[] cycle() {
+            return cycle.clone();
+        }
+    }
+
+    // checks that G is a rooted DAG and returns its root
+    public static int validate(Digraph G) {
+        if (G == null) {
+            throw new IllegalArgumentException("argument is null");
+        }
+        return validate(new CompactDigraph(G));
+    }
+
+    // checks that G is a rooted DAG and returns its root, with an iterative
+    // depth-first search in O(V + E) time
+    public static int validate(CompactDigraph G) {
+        if (G == null) {
+            throw new IllegalArgumentException("argument is null");
+        }
+        int root = checkRoots(G);
+        int[] cycle = findCycle(G);
+        if (cycle != null) {
+            throw cycleException(cycle);
+        }
+        return root;
+    }
+
+    // checks that G is a rooted DAG with a parallel, level-synchronous Kahn
+    // topological sort and returns its root. every vertex with indegree zero
+    // is peeled at once, which drops the indegree of its hypernyms; the
+    // vertices whose indegree reaches zero form the next level. G is acyclic
+    // if and only if every vertex gets peeled. only a digraph that fails
+    // pays for the sequential search that finds a cycle to report
+    public static int parallelRoot(CompactDigraph G) {
+        if (G == null) {
+            throw new IllegalArgumentException("argument is null");
+        }
+        int numOfVertices = G.V();
+        int root = checkRoots(G);
+        AtomicIntegerArray indegree = new AtomicIntegerArray(numOfVertices);
+        IntStream.range(0, numOfVertices).parallel()
+                 .forEach(v -> indegree.set(v, G.indegree(v)));
+        int[] frontier = IntStream.range(0, numOfVertices).parallel()
+                                  .filter(v -> G.indegree(v) == 0).toArray();
+        int frontierSize = frontier.length;
+        int[] spare = new int[numOfVertices];
+        AtomicInteger size = new AtomicInteger();
+        int peeled = 0;
+        while (frontierSize > 0) {
+            peeled += frontierSize;
+            size.set(0);
+            int[] from = frontier;
+            int[] to = spare;
+            IntStream level = IntStream.range(0, frontierSize);
+            if (frontierSize >= PARALLEL_THRESHOLD) {
+                level = level.parallel();
+            }
+            level.forEach(k -> {
+                int v = from[k];
+                int last = G.lastEdge(v);
+                for (int e = G.firstEdge(v); e < last; e++) {
+                    int w = G.target(e);
+                    if (indegree.decrementAndGet(w) == 0) {
+                        to[size.getAndIncrement()] = w;
+                    }
+                }
+            });
+            // the two buffers take turns holding the frontier
+            frontierSize = size.get();
+            frontier = to;
+            spare = from.length == numOfVertices ? from : new int[numOfVertices];
+        }
+        if (peeled != numOfVertices) {
+            throw cycleException(findCycle(G));
+        }
+        return root;
+    }
+
+    // helper method that returns the only vertex of outdegree zero, or throws
+    // if there is more than one. with no vertex of outdegree zero there must
+    // be a cycle, which the caller reports; 0 is returned for an empty digraph
+    private static int checkRoots(CompactDigraph G) {
+        int[] roots = IntStream.range(0, G.V()).filter(v -> G.outdegree(v) == 0)
+                               .toArray();
+        if (roots.length > 1) {
+            throw rootsException(roots);
+        }
+        return roots.length == 1 ? roots[0] : 0;
+    }
+
+    // helper method that runs an iterative dfs over all of G and returns one
+    // cycle (first vertex repeated at the end), or null if G is acyclic.
+    // path holds the vertices on the current dfs path and next[v] is the
+    // index of the next edge of v to follow
+    private static int[] findCycle(CompactDigraph G) {
+        int numOfVertices = G.V();
+        byte[] color = new byte[numOfVertices];
+        int[] path = new int[numOfVertices];
+        int[] next = new int[numOfVertices];
+        for (int s = 0; s < numOfVertices; s++) {
+            if (color[s] != WHITE) {
+                continue;
+            }
+            int depth = 0;
+            path[depth++] = s;
+            color[s] = GRAY;
+            next[s] = G.firstEdge(s);
+            while (depth > 0) {
+                int v = path[depth - 1];
+                if (next[v] == G.lastEdge(v)) {
+                    color[v] = BLACK;
+                    depth -= 1;
+                    continue;
+                }
+                int w = G.target(next[v]++);
+                if (color[w] == WHITE) {
+                    color[w] = GRAY;
+                    next[w] = G.firstEdge(w);
+                    path[depth++] = w;
+                }
+                else if (color[w] == GRAY) {
+                    // w is on the path: the cycle is path from w back to w
+                    int start = depth - 1;
+                    while (path[start] != w) {
+                        start -= 1;
+                    }
+                    int[] cycle = Arrays.copyOfRange(path, start, depth + 1);
+                    cycle[cycle.length - 1] = w;
+                    return cycle;
+                }
+            }
+        }
+        return null;
+    }
+
+    // builds the exception for more than one root, listed in order
+    static InvalidDagException rootsException(int[] roots) {
+        return new InvalidDagException(
+                "digraph has " + roots.length + " roots: " + describe(roots, ", "),
+                roots, new int[0]);
+    }
+
+    // builds the exception for a cycle, first vertex repeated at the end
+    static InvalidDagException cycleException(int[] cycle) {
+        return new InvalidDagException("digraph has a cycle: " + describe(cycle, " -> "),
+                                       new int[0], cycle);
+    }
+
+    // helper method that lists at most the first 20 vertices, separated by sep
+    private static String describe(int[] vertices, String sep) {
+        StringBuilder s = new StringBuilder();
+        int shown = Math.min(vertices.length, 20);
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) {
+                s.append(sep);
+            }
+            s.append(vertices[i]);
+        }
+        if (shown < vertices.length) {
+            s.append(" ... (" + (vertices.length - shown) + " more)");
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// thread-safe histogram of non-negative longs with log-linear buckets, in the
+// style of an HDR histogram: values below 16 get a bucket each, and every
+// power-of-two range above that is split into 16 equal buckets, so any
+// percentile is within 1/16 (6.25%) of the true value while the whole range
+// of a long fits in under a thousand buckets. recording is one atomic add on
+// a bucket plus two LongAdder adds, with no locks and no allocation
+public final class Histogram {
+
+    // sub-buckets per power of two, as a power of two
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    // enough buckets for Long.MAX_VALUE
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // records one value; negative values are recorded as 0
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // helper method that returns the bucket of value
+    private static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    // helper method that returns the largest value that falls in bucket
+    private static long highest(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        long sub = bucket % SUB_COUNT;
+        long lowest = (1L << exponent) | (sub << (exponent - SUB_BITS));
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    // number of values recorded
+    public long count() {
+        return count.sum();
+    }
+
+    // mean of the values recorded, or 0 if there are none
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    // largest value recorded
+    public long max() {
+        return max.get();
+    }
+
+    // a value that at least a fraction p (between 0 and 1) of the recorded
+    // values are no larger than, rounded up to the end of its bucket but never
+    // past max(); 0 if nothing has been recorded
+    public long percentile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p must be between 0 and 1");
+        }
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), max());
+            }
+        }
+        return 0;
+    }
+
+    // forgets every value recorded so far. values recorded while reset()
+    // runs may or may not be kept
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    // count, mean, p50, p90, p99, p99.9 and max
+    public String toString() {
+        return String.format("n=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                             count(), mean(), percentile(0.5), percentile(0.9),
+                             percentile(0.99), percentile(0.999), max());
+    }
+}
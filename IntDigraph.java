@@ -0,0 +1,81 @@
+/******************************************************************************
+ *  Compilation:  javac IntDigraph.java
+ *
+ *  The read-only, primitive view of a digraph that the query engine
+ *  traverses.
+ *
+ ******************************************************************************/
+
+
+/**
+ * The {@code IntDigraph} interface is the read-only view of a directed graph
+ * of vertices named 0 through <em>V</em> - 1 that {@link ShortestCommonAncestor}
+ * and its ancestor labels traverse.
+ * The edges leaving vertex <em>v</em> are numbered {@link #firstEdge(int)}
+ * through {@link #lastEdge(int)} - 1, and {@link #target(int)} returns the
+ * head of an edge, so a traversal never boxes a vertex.
+ * Edge numbers are only meaningful to the digraph that handed them out.
+ * <p>
+ * {@link CompactDigraph} is the immutable compressed sparse row
+ * implementation; {@code OverlayDigraph} layers a small set of edits on top
+ * of another {@code IntDigraph} without copying it.
+ */
+
+public interface IntDigraph {
+
+    /**
+     * Returns the number of vertices in this digraph.
+     *
+     * @return the number of vertices in this digraph
+     */
+    int V();
+
+    /**
+     * Returns the number of edges in this digraph.
+     *
+     * @return the number of edges in this digraph
+     */
+    int E();
+
+    /**
+     * Returns the index of the first edge leaving vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return the index of the first edge leaving {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    int firstEdge(int v);
+
+    /**
+     * Returns one past the index of the last edge leaving vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return one past the index of the last edge leaving {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    int lastEdge(int v);
+
+    /**
+     * Returns the head vertex of edge {@code e}.
+     *
+     * @param e the edge index
+     * @return the vertex that edge {@code e} points to
+     */
+    int target(int e);
+
+    /**
+     * Returns the number of directed edges incident from vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return the outdegree of vertex {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    int outdegree(int v);
+
+    /**
+     * Returns the reverse of the digraph.
+     *
+     * @return the reverse of the digraph
+     */
+    IntDigraph reverse();
+}
@@ -0,0 +1,34 @@
+// receives measurements from ShortestCommonAncestor and WordNet once it is
+// installed with setMetricsListener(). with no listener installed nothing is
+// measured at all: each query reads one volatile field and moves on. calls
+// come from every querying thread at once, so implementations must be thread
+// safe and should be as cheap as the queries they measure. QueryMetrics is an
+// implementation that aggregates everything into counters and histograms
+public interface MetricsListener {
+
+    // the public query methods that are timed
+    enum Query {
+        LENGTH, ANCESTOR, LENGTH_SUBSET, ANCESTOR_SUBSET,
+        DISTANCE, SCA, DISTANCES, DISTANCE_MATRIX, NEAREST,
+        SIMILARITY, ANCESTRAL_PATH
+    }
+
+    // a public query method returned after nanos nanoseconds
+    void query(Query query, long nanos);
+
+    // one search for a shortest common ancestor or an ancestor closure
+    // finished after nanos nanoseconds. sources is the number of synsets it
+    // started from (more than 2 means multi-synset fan-out), visited the
+    // number of vertices it reached and widest the size of its widest bfs
+    // level (0 for closure searches, which run to the end without taking
+    // levels in turn). a search answered from the ancestor label index visits
+    // no vertices and has indexed set
+    void search(int sources, int visited, int widest, boolean indexed, long nanos);
+
+    // a WordNet result cache lookup hit or missed
+    void cache(boolean hit);
+
+    // one phase of building a WordNet took nanos nanoseconds. phases that ran
+    // before the listener was installed are reported when it is installed
+    void phase(String phase, long nanos);
+}
@@ -0,0 +1,417 @@
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// dictionary-encoded noun index. every distinct noun is stored once, in a
+// sorted string table, and its position in the table is its dense noun id;
+// nouns added by withSynset() take the ids after the table.
+// the synset ids of noun id k are postings[postingOffsets[k]] through
+// postings[postingOffsets[k + 1] - 1], in the order they appear in
+// synsets.txt. nouns are found with an open-addressing hash table of noun ids
+// keyed by String.hashCode(), so isNoun() costs one hash probe or two instead
+// of a HashMap node walk, and no id is ever boxed. the table and the int
+// arrays are read through TextTable and IntBuffer, so the same index works
+// over on-heap arrays or over the direct and mapped buffers of an
+// OffHeapStore. withSynset() never copies that table: nouns it adds and the
+// postings it changes are kept in a small delta beside it, so every edited
+// version, or every tenant's version, of one large index shares the table
+final class NounIndex {
+
+    // past one noun in this many of the table, withSynset() folds the delta
+    // into a new table instead of probing an ever larger delta
+    private static final int FOLD_FRACTION = 16;
+
+    // distinct nouns in sorted order; nouns[k] has noun id k
+    private final TextTable nouns;
+
+    // postings of noun id k are postings[postingOffsets[k]] through
+    // postings[postingOffsets[k + 1] - 1]
+    private final IntBuffer postingOffsets;
+    private final IntBuffer postings;
+
+    // slots[h] = noun id + 1, or 0 for an empty slot; the length is a power of
+    // two at least twice the number of nouns, probed linearly
+    private final IntBuffer slots;
+
+    // nouns added since the table was built, sorted; added[j] has noun id
+    // nouns.size() + j and sits at position rank[j] of nouns()
+    private final String[] added;
+    private final int[] rank;
+
+    // noun ids whose postings changed since the table was built, sorted, and
+    // their postings: those of touched[i] are extra[extraOffsets[i]] through
+    // extra[extraOffsets[i + 1] - 1]. every added noun is touched
+    private final int[] touched;
+    private final int[] extraOffsets;
+    private final IntBuffer extra;
+
+    // builds the index from every (noun, synset id) occurrence, in file
+    // order: nouns[k] is a member of synset ids[k]. when parallel is true the
+    // noun table is sorted with Arrays.parallelSort()
+    NounIndex(String[] nouns, int[] ids, boolean parallel) {
+        // sort a copy and drop the repeats, so each noun is kept once
+        String[] sorted = nouns.clone();
+        if (parallel) {
+            Arrays.parallelSort(sorted);
+        }
+        else {
+            Arrays.sort(sorted);
+        }
+        int distinct = 0;
+        for (int k = 0; k < sorted.length; k++) {
+            if (distinct == 0 || !sorted[k].equals(sorted[distinct - 1])) {
+                sorted[distinct++] = sorted[k];
+            }
+        }
+        this.nouns = TextTable.of(Arrays.copyOf(sorted, distinct));
+        this.slots = IntBuffer.wrap(hash(this.nouns));
+        // count the postings of each noun, then fill them in file order
+        int[] nounIds = new int[nouns.length];
+        int[] offsets = new int[distinct + 1];
+        for (int k = 0; k < nouns.length; k++) {
+            nounIds[k] = id(nouns[k]);
+            offsets[nounIds[k] + 1]++;
+        }
+        for (int k = 0; k < distinct; k++) {
+            offsets[k + 1] += offsets[k];
+        }
+        int[] next = Arrays.copyOf(offsets, distinct);
+        int[] postings = new int[nouns.length];
+        for (int k = 0; k < nouns.length; k++) {
+            postings[next[nounIds[k]]++] = ids[k];
+        }
+        this.postings = IntBuffer.wrap(postings);
+        this.postingOffsets = IntBuffer.wrap(offsets);
+        this.added = new String[0];
+        this.rank = new int[0];
+        this.touched = new int[0];
+        this.extraOffsets = new int[] { 0 };
+        this.extra = IntBuffer.wrap(new int[0]);
+    }
+
+    // wraps a noun table that is already sorted and its postings, such as
+    // the ones read back from a WordNetSnapshot, without copying them
+    NounIndex(String[] nouns, int[] postingOffsets, int[] postings) {
+        this.nouns = TextTable.of(nouns);
+        this.postingOffsets = IntBuffer.wrap(postingOffsets);
+        this.postings = IntBuffer.wrap(postings);
+        this.slots = IntBuffer.wrap(hash(this.nouns));
+        this.added = new String[0];
+        this.rank = new int[0];
+        this.touched = new int[0];
+        this.extraOffsets = new int[] { 0 };
+        this.extra = IntBuffer.wrap(new int[0]);
+    }
+
+    // wraps every part of an index, hash table included, such as the
+    // buffers of an OffHeapStore, without copying them
+    NounIndex(TextTable nouns, IntBuffer postingOffsets, IntBuffer postings,
+              IntBuffer slots) {
+        this.nouns = nouns;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+        this.slots = slots;
+        this.added = new String[0];
+        this.rank = new int[0];
+        this.touched = new int[0];
+        this.extraOffsets = new int[] { 0 };
+        this.extra = IntBuffer.wrap(new int[0]);
+    }
+
+    // helper constructor for the table of index with a new delta
+    private NounIndex(NounIndex index, String[] added, int[] touched,
+                      int[] extraOffsets, int[] extra) {
+        this.nouns = index.nouns;
+        this.postingOffsets = index.postingOffsets;
+        this.postings = index.postings;
+        this.slots = index.slots;
+        this.added = added;
+        this.touched = touched;
+        this.extraOffsets = extraOffsets;
+        this.extra = IntBuffer.wrap(extra);
+        this.rank = new int[added.length];
+        for (int j = 0; j < added.length; j++) {
+            rank[j] = insertionPoint(added[j]) + j;
+        }
+    }
+
+    // helper method that builds the open-addressing table over nouns
+    private static int[] hash(TextTable nouns) {
+        int size = nouns.size();
+        int[] slots = new int[Math.max(2, Integer.highestOneBit(
+                Math.max(1, 2 * size - 1)) << 1)];
+        int mask = slots.length - 1;
+        for (int k = 0; k < size; k++) {
+            int h = spread(nouns.get(k).hashCode()) & mask;
+            while (slots[h] != 0) {
+                h = (h + 1) & mask;
+            }
+            slots[h] = k + 1;
+        }
+        return slots;
+    }
+
+    // helper method that mixes the high bits of a hash code into the low ones
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // the noun id of noun, or -1 if it is not a noun
+    int id(String noun) {
+        int mask = slots.capacity() - 1;
+        int h = spread(noun.hashCode()) & mask;
+        for (int slot = slots.get(h); slot != 0; slot = slots.get(h)) {
+            if (nouns.matches(slot - 1, noun)) {
+                return slot - 1;
+            }
+            h = (h + 1) & mask;
+        }
+        if (added.length == 0) {
+            return -1;
+        }
+        int j = Arrays.binarySearch(added, noun);
+        return j < 0 ? -1 : nouns.size() + j;
+    }
+
+    // helper method that returns the number of nouns of the table that sort
+    // before noun, which is not in it
+    private int insertionPoint(String noun) {
+        int lo = 0;
+        int hi = nouns.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (nouns.get(mid).compareTo(noun) < 0) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // this index with every noun of words also belonging to synset id, a
+    // synset added after every synset already indexed, so its id goes last
+    // in each noun's postings. nouns seen for the first time get ids after
+    // the table, in sorted order among the added nouns, so a new noun shifts
+    // the ids of the added nouns that sort after it; the ids of the nouns of
+    // the table stay the same. the table is shared, and only the delta is
+    // copied, unless the delta has grown past a fraction of the table, in
+    // which case both are folded into a new table on the heap and every noun
+    // id is again its position in sorted order. either way, callers that keep
+    // noun ids across an edit must map them again by noun. this index is left
+    // unchanged for readers still using it
+    NounIndex withSynset(String[] words, int id) {
+        String[] distinct = words.clone();
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int j = 0; j < distinct.length; j++) {
+            if (count == 0 || !distinct[j].equals(distinct[count - 1])) {
+                distinct[count++] = distinct[j];
+            }
+        }
+        distinct = Arrays.copyOf(distinct, count);
+        // the nouns of the table that gain a posting, and the new nouns
+        int size = nouns.size();
+        int[] gaining = new int[count];
+        int gainCount = 0;
+        String[] nextAdded = Arrays.copyOf(added, added.length + count);
+        int addedCount = added.length;
+        for (String word : distinct) {
+            int k = id(word);
+            if (k < 0) {
+                nextAdded[addedCount++] = word;
+            }
+            else if (k < size) {
+                gaining[gainCount++] = k;
+            }
+        }
+        nextAdded = Arrays.copyOf(nextAdded, addedCount);
+        Arrays.sort(nextAdded);
+        // every touched noun of the table, old or new, then every added noun
+        int[] tableTouched = Arrays.copyOf(gaining, gainCount);
+        Arrays.sort(tableTouched);
+        int old = 0;
+        while (old < touched.length && touched[old] < size) {
+            old++;
+        }
+        int[] nextTouched = new int[old + gainCount + addedCount];
+        int t = 0;
+        for (int i = 0, j = 0; i < old || j < gainCount; ) {
+            int v = j == gainCount || (i < old && touched[i] < tableTouched[j])
+                    ? touched[i++] : tableTouched[j++];
+            if (t == 0 || nextTouched[t - 1] != v) {
+                nextTouched[t++] = v;
+            }
+        }
+        for (int j = 0; j < addedCount; j++) {
+            nextTouched[t++] = size + j;
+        }
+        // the postings of every touched noun: what it had, then id if it is
+        // one of words
+        int[] nextOffsets = new int[t + 1];
+        for (int i = 0; i < t; i++) {
+            String noun = noun(nextTouched, nextAdded, i);
+            int k = nextTouched[i] < size ? nextTouched[i] : id(noun);
+            int had = k < 0 ? 0 : lastPosting(k) - firstPosting(k);
+            int gains = Arrays.binarySearch(distinct, noun) >= 0 ? 1 : 0;
+            nextOffsets[i + 1] = nextOffsets[i] + had + gains;
+        }
+        int[] nextExtra = new int[nextOffsets[t]];
+        for (int i = 0; i < t; i++) {
+            String noun = noun(nextTouched, nextAdded, i);
+            int k = nextTouched[i] < size ? nextTouched[i] : id(noun);
+            int p = nextOffsets[i];
+            if (k >= 0) {
+                IntBuffer ids = postings(k);
+                for (int e = firstPosting(k); e < lastPosting(k); e++) {
+                    nextExtra[p++] = ids.get(e);
+                }
+            }
+            if (p < nextOffsets[i + 1]) {
+                nextExtra[p] = id;
+            }
+        }
+        NounIndex next = new NounIndex(this, nextAdded, Arrays.copyOf(nextTouched, t),
+                                       nextOffsets, nextExtra);
+        return (long) t * FOLD_FRACTION > size ? next.flat() : next;
+    }
+
+    // helper method that returns the noun of the i-th of touched, a touched
+    // list whose added nouns are added
+    private String noun(int[] touched, String[] added, int i) {
+        int size = nouns.size();
+        return touched[i] < size ? nouns.get(touched[i]) : added[touched[i] - size];
+    }
+
+    // this index with its delta folded into a new table on the heap, in which
+    // every noun id is again the position of the noun in sorted order; this
+    // index itself if it has no delta
+    NounIndex flat() {
+        if (touched.length == 0) {
+            return this;
+        }
+        int count = size();
+        String[] table = new String[count];
+        int[] offsets = new int[count + 1];
+        int[] merged = new int[postings.capacity() + extra.capacity()];
+        int p = 0;
+        for (int i = 0, j = 0, k = 0; k < count; k++) {
+            int id = j < added.length && rank[j] == k ? nouns.size() + j++ : i++;
+            table[k] = noun(id);
+            IntBuffer ids = postings(id);
+            for (int e = firstPosting(id); e < lastPosting(id); e++) {
+                merged[p++] = ids.get(e);
+            }
+            offsets[k + 1] = p;
+        }
+        return new NounIndex(table, offsets, Arrays.copyOf(merged, p));
+    }
+
+    // number of distinct nouns
+    int size() {
+        return nouns.size() + added.length;
+    }
+
+    // the noun with noun id k
+    String noun(int k) {
+        int size = nouns.size();
+        return k < size ? nouns.get(k) : added[k - size];
+    }
+
+    // every noun in sorted order, read-only
+    List<String> nouns() {
+        return new AbstractList<String>() {
+            public String get(int k) {
+                if (added.length == 0) {
+                    return nouns.get(k);
+                }
+                int j = Arrays.binarySearch(rank, k);
+                return j >= 0 ? added[j] : nouns.get(k + j + 1);
+            }
+
+            public int size() {
+                return NounIndex.this.size();
+            }
+        };
+    }
+
+    // helper method that returns the index of noun id k in touched, or a
+    // negative number if its postings are those of the table
+    private int delta(int k) {
+        return touched.length == 0 ? -1 : Arrays.binarySearch(touched, k);
+    }
+
+    // the postings that hold those of noun id k, read with absolute get()
+    // from firstPosting(k) to lastPosting(k); callers must not modify them or
+    // move their position
+    IntBuffer postings(int k) {
+        return delta(k) < 0 ? postings : extra;
+    }
+
+    // index of the first posting of noun id k in postings(k)
+    int firstPosting(int k) {
+        int i = delta(k);
+        return i < 0 ? postingOffsets.get(k) : extraOffsets[i];
+    }
+
+    // index just past the last posting of noun id k in postings(k)
+    int lastPosting(int k) {
+        int i = delta(k);
+        return i < 0 ? postingOffsets.get(k + 1) : extraOffsets[i + 1];
+    }
+
+    // do noun ids j and k belong to exactly the same synsets, in the same
+    // order?
+    boolean samePostings(int j, int k) {
+        IntBuffer a = postings(j);
+        IntBuffer b = postings(k);
+        int i = firstPosting(j);
+        int e = firstPosting(k);
+        int end = lastPosting(j);
+        if (end - i != lastPosting(k) - e) {
+            return false;
+        }
+        for (; i < end; i++, e++) {
+            if (a.get(i) != b.get(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the postings of the table, not counting the delta, read the same way;
+    // call flat() first to have every posting here
+    IntBuffer postings() {
+        return postings;
+    }
+
+    // the posting offsets of the table, read the same way
+    IntBuffer postingOffsets() {
+        return postingOffsets;
+    }
+
+    // the hash table of the noun ids of the table, read the same way
+    IntBuffer slots() {
+        return slots;
+    }
+
+    // the sorted noun table, without the nouns added since it was built
+    TextTable table() {
+        return nouns;
+    }
+
+    // bytes used by the index, not counting on-heap noun Strings
+    long bytes() {
+        return nouns.bytes() + deltaBytes() + 4L * (nouns.size() + postingOffsets.capacity()
+                + postings.capacity() + slots.capacity());
+    }
+
+    // bytes used by the delta alone, not counting on-heap noun Strings
+    long deltaBytes() {
+        return 4L * (rank.length + touched.length + extraOffsets.length
+                + extra.capacity());
+    }
+}
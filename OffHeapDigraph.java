@@ -0,0 +1,166 @@
+/******************************************************************************
+ *  Compilation:  javac OffHeapDigraph.java
+ *  Dependencies: IntDigraph.java
+ *
+ *  An immutable digraph whose compressed sparse rows live outside the Java
+ *  heap, in direct or memory-mapped buffers.
+ *
+ ******************************************************************************/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+
+/**
+ * The {@code OffHeapDigraph} class represents an immutable directed graph of
+ * vertices named 0 through <em>V</em> - 1, stored in the same compressed
+ * sparse row layout as {@link CompactDigraph}, but in {@link IntBuffer}s over
+ * direct or memory-mapped {@link ByteBuffer}s instead of {@code int[]}s.
+ * The garbage collector never scans or copies the rows, so a digraph with
+ * tens of millions of edges adds nothing to the heap or to pause times, and
+ * a file-backed digraph is paged in by the operating system as it is read.
+ * <p>
+ * It is read through the {@link IntDigraph} interface, so
+ * {@link ShortestCommonAncestor} traverses it exactly like a
+ * {@code CompactDigraph}.
+ * The <code>reverse()</code> method takes &Theta;(<em>E</em> + <em>V</em>) time
+ * and puts the reverse in direct buffers; all other instance methods take
+ * &Theta;(1) time.
+ */
+
+public final class OffHeapDigraph implements IntDigraph {
+
+    private final IntBuffer offsets;   // offsets.get(v) = index of v's first edge
+    private final IntBuffer targets;   // targets.get(e) = head vertex of edge e
+
+    /**
+     * Initializes a digraph over its compressed sparse rows, read with
+     * absolute {@code get()} and never modified.
+     *
+     * @param offsets the {@code V + 1} row offsets into {@code targets}
+     * @param targets the head vertex of every edge, grouped by tail vertex
+     * @throws IllegalArgumentException if the buffers do not describe a digraph
+     */
+    OffHeapDigraph(IntBuffer offsets, IntBuffer targets) {
+        if (offsets == null || targets == null)
+            throw new IllegalArgumentException("argument is null");
+        if (offsets.capacity() == 0 || offsets.get(0) != 0
+                || offsets.get(offsets.capacity() - 1) != targets.capacity())
+            throw new IllegalArgumentException("offsets do not cover targets");
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Returns the number of vertices in this digraph.
+     *
+     * @return the number of vertices in this digraph
+     */
+    public int V() {
+        return offsets.capacity() - 1;
+    }
+
+    /**
+     * Returns the number of edges in this digraph.
+     *
+     * @return the number of edges in this digraph
+     */
+    public int E() {
+        return targets.capacity();
+    }
+
+    // throw an IllegalArgumentException unless {@code 0 <= v < V}
+    private void validateVertex(int v) {
+        if (v < 0 || v >= offsets.capacity() - 1)
+            throw new IllegalArgumentException(
+                    "vertex " + v + " is not between 0 and " + (offsets.capacity() - 2));
+    }
+
+    /**
+     * Returns the index of the first edge leaving vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return the index of the first edge leaving {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int firstEdge(int v) {
+        validateVertex(v);
+        return offsets.get(v);
+    }
+
+    /**
+     * Returns one past the index of the last edge leaving vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return one past the index of the last edge leaving {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int lastEdge(int v) {
+        validateVertex(v);
+        return offsets.get(v + 1);
+    }
+
+    /**
+     * Returns the head vertex of edge {@code e}.
+     *
+     * @param e the edge index
+     * @return the vertex that edge {@code e} points to
+     * @throws IndexOutOfBoundsException unless {@code 0 <= e < E}
+     */
+    public int target(int e) {
+        return targets.get(e);
+    }
+
+    /**
+     * Returns the number of directed edges incident from vertex {@code v}.
+     *
+     * @param v the vertex
+     * @return the outdegree of vertex {@code v}
+     * @throws IllegalArgumentException unless {@code 0 <= v < V}
+     */
+    public int outdegree(int v) {
+        validateVertex(v);
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+
+    /**
+     * Returns the reverse of the digraph, in direct buffers.
+     *
+     * @return the reverse of the digraph
+     */
+    public OffHeapDigraph reverse() {
+        int numOfVertices = V();
+        int[] next = new int[numOfVertices + 1];
+        for (int e = 0; e < targets.capacity(); e++) {
+            next[targets.get(e) + 1]++;
+        }
+        for (int v = 0; v < numOfVertices; v++) {
+            next[v + 1] += next[v];
+        }
+        IntBuffer reverseOffsets = direct(numOfVertices + 1);
+        reverseOffsets.put(next);
+        IntBuffer reverseTargets = direct(targets.capacity());
+        for (int v = 0; v < numOfVertices; v++) {
+            for (int e = offsets.get(v); e < offsets.get(v + 1); e++) {
+                reverseTargets.put(next[targets.get(e)]++, v);
+            }
+        }
+        return new OffHeapDigraph(reverseOffsets, reverseTargets);
+    }
+
+    /**
+     * Returns the number of bytes of buffer this digraph reads.
+     *
+     * @return the bytes used by the offset and target buffers
+     */
+    public long bytes() {
+        return 4L * (offsets.capacity() + targets.capacity());
+    }
+
+    // a direct int buffer of count ints in native order
+    static IntBuffer direct(int count) {
+        return ByteBuffer.allocateDirect(4 * count).order(ByteOrder.nativeOrder())
+                         .asIntBuffer();
+    }
+}
@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// the large, read-only parts of a WordNet kept outside the Java heap: the
+// compressed sparse rows of the digraph, the sorted noun table with its
+// postings and hash slots, and the UTF-8 bytes of every synset and gloss.
+// each part is a section of direct memory, or of a memory-mapped file that
+// open() can map again later without reading or parsing anything. the
+// sections are read through the same OffHeapDigraph (an IntDigraph),
+// NounIndex and TextTable interfaces as the on-heap structures, so a
+// WordNet answers queries from either without knowing which it has. the
+// layout of a file is
+//
+//   int magic, int version, int byte order (1 little endian, 2 big endian),
+//   int root, long[SECTIONS] section sizes in bytes
+//   the sections in order, each starting at a multiple of 8 bytes
+//
+// sections are mapped one at a time, so each may hold up to 2 GB
+final class OffHeapStore {
+
+    // "WNOH"
+    private static final int MAGIC = 0x574E4F48;
+
+    // bumped whenever the layout changes; older files are rejected
+    static final int VERSION = 1;
+
+    // digraph offsets and targets, noun table offsets and bytes, posting
+    // offsets, postings, hash slots, synset offsets and bytes, gloss offsets
+    // and bytes
+    private static final int SECTIONS = 11;
+    private static final int HEADER = 16 + 8 * SECTIONS;
+
+    final OffHeapDigraph digraph;
+    final int root;
+    final NounIndex nouns;
+    final TextTable synsets;
+    final TextTable glosses;
+
+    // total bytes of all sections
+    final long bytes;
+
+    // helper constructor that wraps the sections
+    private OffHeapStore(ByteBuffer[] sections, int root) {
+        this.digraph = new OffHeapDigraph(ints(sections[0]), ints(sections[1]));
+        this.root = root;
+        this.nouns = new NounIndex(new Text(ints(sections[2]), sections[3]),
+                                   ints(sections[4]), ints(sections[5]),
+                                   ints(sections[6]));
+        this.synsets = new Text(ints(sections[7]), sections[8]);
+        this.glosses = new Text(ints(sections[9]), sections[10]);
+        long total = 0;
+        for (ByteBuffer section : sections) {
+            total += section.capacity();
+        }
+        this.bytes = total;
+        if (nouns.size() + 1 != ints(sections[4]).capacity()
+                || synsets.size() != digraph.V() || glosses.size() != digraph.V()) {
+            throw new IllegalArgumentException("sections do not match");
+        }
+    }
+
+    // copies the parts of a WordNet into a new store: into direct memory if
+    // file is null, or else into file, replacing it, mapped into memory
+    static OffHeapStore copy(IntDigraph digraph, int root, NounIndex nouns,
+                             TextTable synsets, TextTable glosses, Path file) {
+        // each string is encoded once, and its bytes both size and fill its
+        // section
+        byte[][] table = encode(nouns.table());
+        byte[][] synsetText = encode(synsets);
+        byte[][] glossText = encode(glosses);
+        long[] sizes = {
+                4L * (digraph.V() + 1), 4L * digraph.E(),
+                4L * (table.length + 1), length(table),
+                4L * nouns.postingOffsets().capacity(), 4L * nouns.postings().capacity(),
+                4L * nouns.slots().capacity(),
+                4L * (synsetText.length + 1), length(synsetText),
+                4L * (glossText.length + 1), length(glossText)
+        };
+        ByteBuffer[] sections = file == null ? allocate(sizes) : create(file, sizes, root);
+        IntBuffer offsets = ints(sections[0]);
+        IntBuffer targets = ints(sections[1]);
+        for (int v = 0, e = 0; v < digraph.V(); v++) {
+            offsets.put(v, e);
+            int last = digraph.lastEdge(v);
+            for (int f = digraph.firstEdge(v); f < last; f++) {
+                targets.put(e++, digraph.target(f));
+            }
+            offsets.put(v + 1, e);
+        }
+        if (digraph.V() == 0) {
+            offsets.put(0, 0);
+        }
+        writeText(table, ints(sections[2]), sections[3]);
+        copyInts(nouns.postingOffsets(), ints(sections[4]));
+        copyInts(nouns.postings(), ints(sections[5]));
+        copyInts(nouns.slots(), ints(sections[6]));
+        writeText(synsetText, ints(sections[7]), sections[8]);
+        writeText(glossText, ints(sections[9]), sections[10]);
+        if (file != null) {
+            for (ByteBuffer section : sections) {
+                ((MappedByteBuffer) section).force();
+            }
+        }
+        return new OffHeapStore(sections, root);
+    }
+
+    // maps a store written by copy() back into memory, checking its magic
+    // number, version, byte order and size but reading none of the sections
+    static OffHeapStore open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                throw new IllegalArgumentException(file + " is not a WordNet store");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER)
+                                       .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException(file + " is not a WordNet store");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IllegalArgumentException(
+                        file + " is store version " + header.getInt(4)
+                                + ", expected " + VERSION);
+            }
+            if (header.getInt(8) != order(ByteOrder.nativeOrder())) {
+                throw new IllegalArgumentException(
+                        file + " was written on a machine with the other byte order");
+            }
+            int root = header.getInt(12);
+            long[] sizes = new long[SECTIONS];
+            long position = HEADER;
+            for (int i = 0; i < SECTIONS; i++) {
+                sizes[i] = header.getLong(16 + 8 * i);
+                if (sizes[i] < 0 || sizes[i] > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(file + " is corrupt: bad section size");
+                }
+                position = align(position) + sizes[i];
+            }
+            if (position != channel.size()) {
+                throw new IllegalArgumentException(file + " is corrupt: bad length");
+            }
+            ByteBuffer[] sections = map(channel, FileChannel.MapMode.READ_ONLY, sizes);
+            return new OffHeapStore(sections, root);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not open " + file, e);
+        }
+    }
+
+    // helper method that allocates every section in direct memory
+    private static ByteBuffer[] allocate(long[] sizes) {
+        ByteBuffer[] sections = new ByteBuffer[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sections[i] = ByteBuffer.allocateDirect(checkedSize(sizes[i]))
+                                    .order(ByteOrder.nativeOrder());
+        }
+        return sections;
+    }
+
+    // helper method that creates file with its header and maps every section
+    // of it for writing
+    private static ByteBuffer[] create(Path file, long[] sizes, int root) {
+        try (FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(order(ByteOrder.nativeOrder()))
+                  .putInt(root);
+            for (long size : sizes) {
+                header.putLong(checkedSize(size));
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            return map(channel, FileChannel.MapMode.READ_WRITE, sizes);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + file, e);
+        }
+    }
+
+    // helper method that maps each section, in order, after the header
+    private static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode,
+                                    long[] sizes) throws IOException {
+        ByteBuffer[] sections = new ByteBuffer[sizes.length];
+        long position = HEADER;
+        for (int i = 0; i < sizes.length; i++) {
+            position = align(position);
+            sections[i] = channel.map(mode, position, sizes[i]).order(ByteOrder.nativeOrder());
+            position += sizes[i];
+        }
+        return sections;
+    }
+
+    // helper method that rounds position up to a multiple of 8
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    // helper method that throws unless a section fits one buffer
+    private static int checkedSize(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("section of " + size + " bytes is too large");
+        }
+        return (int) size;
+    }
+
+    // helper method that encodes a byte order in the header
+    private static int order(ByteOrder order) {
+        return order == ByteOrder.LITTLE_ENDIAN ? 1 : 2;
+    }
+
+    // helper method that views a section as ints
+    private static IntBuffer ints(ByteBuffer section) {
+        return section.duplicate().order(section.order()).asIntBuffer();
+    }
+
+    // helper method that copies every int of from into to
+    private static void copyInts(IntBuffer from, IntBuffer to) {
+        for (int i = 0; i < from.capacity(); i++) {
+            to.put(i, from.get(i));
+        }
+    }
+
+    // helper method that returns the UTF-8 bytes of every string of table
+    private static byte[][] encode(TextTable table) {
+        byte[][] text = new byte[table.size()][];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = table.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+
+    // helper method that returns the total length of the byte arrays of text
+    private static long length(byte[][] text) {
+        long length = 0;
+        for (byte[] bytes : text) {
+            length += bytes.length;
+        }
+        return length;
+    }
+
+    // helper method that writes the byte arrays of text back to back, with
+    // offsets.get(i) the start of string i
+    private static void writeText(byte[][] text, IntBuffer offsets, ByteBuffer bytes) {
+        ByteBuffer out = bytes.duplicate();
+        offsets.put(0, 0);
+        for (int i = 0; i < text.length; i++) {
+            out.put(text[i]);
+            offsets.put(i + 1, out.position());
+        }
+    }
+
+    // a table of strings stored as UTF-8 bytes, string i being the bytes from
+    // offsets.get(i) to offsets.get(i + 1)
+    private static final class Text implements TextTable {
+        private final IntBuffer offsets;
+        private final ByteBuffer bytes;
+
+        private Text(IntBuffer offsets, ByteBuffer bytes) {
+            if (offsets.capacity() == 0
+                    || offsets.get(offsets.capacity() - 1) != bytes.capacity()) {
+                throw new IllegalArgumentException("offsets do not cover the text");
+            }
+            this.offsets = offsets;
+            this.bytes = bytes;
+        }
+
+        public int size() {
+            return offsets.capacity() - 1;
+        }
+
+        public String get(int i) {
+            int from = offsets.get(i);
+            byte[] utf8 = new byte[offsets.get(i + 1) - from];
+            bytes.get(from, utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        // compares ASCII strings byte by byte, with no String built; only a
+        // string with other characters is decoded to compare
+        public boolean matches(int i, String s) {
+            int from = offsets.get(i);
+            int length = offsets.get(i + 1) - from;
+            int n = s.length();
+            // UTF-8 never takes fewer bytes than chars
+            if (length < n) {
+                return false;
+            }
+            for (int k = 0; k < n; k++) {
+                char c = s.charAt(k);
+                if (c >= 0x80) {
+                    return get(i).equals(s);
+                }
+                if (bytes.get(from + k) != c) {
+                    return false;
+                }
+            }
+            return length == n;
+        }
+
+        public long bytes() {
+            return 4L * offsets.capacity() + bytes.capacity();
+        }
+    }
+}
@@ -1,44 +1,117 @@
 import edu.princeton.cs.algs4.In;
 
-public class Outcast {
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+public class Outcast implements AutoCloseable {
 
     // creates WordNet object
     private WordNet wordNet;
 
+    // pool the parallel mode runs in, null when running sequentially
+    private final ForkJoinPool pool;
+
     // constructor takes a WordNet object
     public Outcast(WordNet wordnet) {
+        this(wordnet, 1);
+    }
+
+    // constructor takes a WordNet object and the number of threads to spread
+    // the work over. with parallelism 1 everything runs on the calling thread;
+    // otherwise the Outcast starts its own pool of threads, which close()
+    // shuts down
+    public Outcast(WordNet wordnet, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
         this.wordNet = wordnet;
+        this.pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
     }
 
     // given an array of WordNet nouns, return an outcast
     public String outcast(String[] nouns) {
+        if (pool == null) {
+            return outcast(nouns, false);
+        }
+        // parallel streams started inside the pool run in the pool
+        return pool.submit(() -> outcast(nouns, true)).join();
+    }
+
+    // given many arrays of WordNet nouns, return the outcast of each, in the
+    // same order. the arrays are processed concurrently, each one on a single
+    // thread
+    public String[] outcasts(List<String[]> groups) {
+        if (pool == null) {
+            String[] answer = new String[groups.size()];
+            for (int i = 0; i < answer.length; i++) {
+                answer[i] = outcast(groups.get(i), false);
+            }
+            return answer;
+        }
+        return pool.submit(() -> IntStream.range(0, groups.size()).parallel()
+                .mapToObj(i -> outcast(groups.get(i), false))
+                .toArray(String[]::new)).join();
+    }
+
+    // helper method that finds the outcast of nouns, with the distances and
+    // row sums spread over the current fork-join pool when parallel is true.
+    // each symmetric distance is computed once, and ties always go to the
+    // first noun with the largest sum, so the answer never depends on
+    // parallel or on scheduling
+    private String outcast(String[] nouns, boolean parallel) {
+        // one search per distinct noun, one merge per unordered pair
+        int[][] distances = wordNet.distanceMatrix(nouns, parallel);
+        IntStream rows = IntStream.range(0, nouns.length);
+        int[] sums = (parallel ? rows.parallel() : rows)
+                .map(i -> rowSum(distances[i])).toArray();
         int maxSum = 0;
         String maxString = null;
         for (int i = 0; i < nouns.length; i++) {
-            int currSum = 0;
-            for (int j = 0; j < nouns.length; j++) {
-                if (i != j) {
-                    int currDistance =
-                            wordNet.distance(nouns[i], nouns[j]);
-                    currSum += currDistance;
-                }
-            }
-            if (currSum > maxSum) {
-                maxSum = currSum;
+            if (sums[i] > maxSum) {
+                maxSum = sums[i];
                 maxString = nouns[i];
             }
         }
         return maxString;
     }
 
-    // test client (see below)
+    // shuts down the pool of a parallel Outcast; calls already running still
+    // finish, and later calls to outcast() or outcasts() are rejected. does
+    // nothing for a sequential Outcast
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // helper method that adds up one row of the distance matrix
+    private static int rowSum(int[] row) {
+        int currSum = 0;
+        for (int currDistance : row) {
+            currSum += currDistance;
+        }
+        return currSum;
+    }
+
+    // test client (see below). the outcast files are processed concurrently,
+    // on as many threads as the outcast.parallelism system property says
+    // (the number of processors by default), and printed in order
     public static void main(String[] args) {
         WordNet wordnet = new WordNet(args[0], args[1]);
-        Outcast outcast = new Outcast(wordnet);
+        int parallelism = Integer.getInteger("outcast.parallelism",
+                                             Runtime.getRuntime().availableProcessors());
+        List<String[]> groups = new ArrayList<String[]>();
         for (int t = 2; t < args.length; t++) {
             In in = new In(args[t]);
-            String[] nouns = in.readAllStrings();
-            System.out.println(args[t] + ": " + outcast.outcast(nouns));
+            groups.add(in.readAllStrings());
+        }
+        try (Outcast outcast = new Outcast(wordnet, parallelism)) {
+            String[] answers = outcast.outcasts(groups);
+            for (int t = 2; t < args.length; t++) {
+                System.out.println(args[t] + ": " + answers[t - 2]);
+            }
         }
     }
 
@@ -0,0 +1,454 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// immutable digraph made of a base IntDigraph, which is never copied, plus a
+// small set of edits: vertices appended after the base's, edges added, and
+// base edges removed. every vertex an edit touches gets a fresh adjacency
+// list in one extra array, found through a small open-addressing table; every
+// other vertex reads the base directly. base edges keep their numbers and
+// the edges in the extra array are numbered from base.E() up. withVertex(),
+// withEdge() and withoutEdge() return a new overlay over the same base, so a
+// reader of the old one is never disturbed, and an overlay and its reverse
+// share one reverse of the base, computed the first time either needs it.
+// an edit rebuilds only the one adjacency list it changes, from the base and
+// the edit lists, and carries every other touched list forward, in both
+// directions once the reverse has been asked for. it still copies the
+// table and the extra array, so each edit costs time linear in the edits
+// so far, without boxing; WordNet folds the overlay into a CompactDigraph
+// before that grows past a fraction of the digraph
+final class OverlayDigraph implements IntDigraph {
+
+    // the base in both directions
+    private final Base base;
+
+    // true if this is the reverse of the edited digraph
+    private final boolean reversed;
+
+    // the base in this overlay's direction
+    private final IntDigraph graph;
+    private final int baseEdges;
+
+    private final int numOfVertices;
+    private final int numOfEdges;
+
+    // the edits as (tail, head) pairs of the edited digraph, in the order
+    // they were made: edges not in the base, and base edges left out
+    private final int[] added;
+    private final int[] removed;
+
+    // open-addressing table of the touched vertices: keys[i] = v + 1, or 0
+    // for an empty slot, and v's edges are firsts[i] through lasts[i] - 1
+    private final int[] keys;
+    private final int[] firsts;
+    private final int[] lasts;
+
+    // heads of the edges of every touched vertex, grouped by vertex. an
+    // edit appends the new list of the vertex it changes, leaving its old
+    // list unused until the array is next compacted
+    private final int[] extra;
+
+    // number of touched vertices, and the length of their lists
+    private final int count;
+    private final int live;
+
+    // the reverse of this overlay, null until reverse() is first called
+    private volatile OverlayDigraph reverse;
+
+    // constructor takes the digraph to edit, with no edits yet
+    OverlayDigraph(IntDigraph base) {
+        this(new Base(base), false, base.V(), new int[0], new int[0]);
+    }
+
+    // helper constructor that lays out the adjacency lists of every vertex
+    // the edits touch, in the given direction
+    private OverlayDigraph(Base base, boolean reversed, int numOfVertices,
+                           int[] added, int[] removed) {
+        this.base = base;
+        this.reversed = reversed;
+        this.graph = base.get(reversed);
+        this.baseEdges = graph.E();
+        this.numOfVertices = numOfVertices;
+        this.added = added;
+        this.removed = removed;
+        Map<Integer, List<Integer>> touched = new LinkedHashMap<Integer, List<Integer>>();
+        for (int i = 0; i < removed.length; i += 2) {
+            int v = reversed ? removed[i + 1] : removed[i];
+            Integer w = reversed ? removed[i] : removed[i + 1];
+            adjacency(touched, v).remove(w);
+        }
+        for (int i = 0; i < added.length; i += 2) {
+            int v = reversed ? added[i + 1] : added[i];
+            int w = reversed ? added[i] : added[i + 1];
+            adjacency(touched, v).add(w);
+        }
+        for (int v = graph.V(); v < numOfVertices; v++) {
+            adjacency(touched, v);
+        }
+        int size = touched.isEmpty() ? 0 : Integer.highestOneBit(touched.size()) * 4;
+        keys = new int[size];
+        firsts = new int[size];
+        lasts = new int[size];
+        int length = 0;
+        for (List<Integer> adj : touched.values()) {
+            length += adj.size();
+        }
+        extra = new int[length];
+        this.count = touched.size();
+        this.live = length;
+        int e = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : touched.entrySet()) {
+            int v = entry.getKey();
+            int i = hash(v) & (size - 1);
+            while (keys[i] != 0) {
+                i = (i + 1) & (size - 1);
+            }
+            keys[i] = v + 1;
+            firsts[i] = baseEdges + e;
+            for (int w : entry.getValue()) {
+                extra[e++] = w;
+            }
+            lasts[i] = baseEdges + e;
+        }
+        this.numOfEdges = baseEdges + (added.length - removed.length) / 2;
+    }
+
+    // helper constructor for prev with v's adjacency list replaced by adj
+    // and the given vertex count and edit lists; every other touched list is
+    // carried over as it is
+    private OverlayDigraph(OverlayDigraph prev, int numOfVertices, int[] added,
+                           int[] removed, int v, int[] adj) {
+        this.base = prev.base;
+        this.reversed = prev.reversed;
+        this.graph = prev.graph;
+        this.baseEdges = prev.baseEdges;
+        this.numOfVertices = numOfVertices;
+        this.added = added;
+        this.removed = removed;
+        this.numOfEdges = baseEdges + (added.length - removed.length) / 2;
+        int i = prev.keys.length == 0 ? -1 : prev.find(v);
+        int old = i < 0 ? 0 : prev.lasts[i] - prev.firsts[i];
+        this.count = prev.count + (i < 0 ? 1 : 0);
+        this.live = prev.live - old + adj.length;
+        int size = Math.max(4, prev.keys.length);
+        while (count * 2 > size) {
+            size *= 2;
+        }
+        // once most of extra is lists no longer used, lay out the live ones
+        // again, as a table that grows has to anyway
+        boolean compact = size != prev.keys.length || prev.extra.length > 2 * live;
+        if (compact) {
+            keys = new int[size];
+            firsts = new int[size];
+            lasts = new int[size];
+            extra = new int[live];
+            int e = 0;
+            for (int j = 0; j < prev.keys.length; j++) {
+                int u = prev.keys[j] - 1;
+                if (u >= 0 && u != v) {
+                    int k = insert(u);
+                    firsts[k] = baseEdges + e;
+                    for (int f = prev.firsts[j]; f < prev.lasts[j]; f++) {
+                        extra[e++] = prev.extra[f - baseEdges];
+                    }
+                    lasts[k] = baseEdges + e;
+                }
+            }
+            int k = insert(v);
+            firsts[k] = baseEdges + e;
+            System.arraycopy(adj, 0, extra, e, adj.length);
+            lasts[k] = baseEdges + e + adj.length;
+        }
+        else {
+            keys = prev.keys.clone();
+            firsts = prev.firsts.clone();
+            lasts = prev.lasts.clone();
+            extra = Arrays.copyOf(prev.extra, prev.extra.length + adj.length);
+            System.arraycopy(adj, 0, extra, prev.extra.length, adj.length);
+            int k = i < 0 ? insert(v) : i;
+            firsts[k] = baseEdges + prev.extra.length;
+            lasts[k] = baseEdges + extra.length;
+        }
+    }
+
+    // helper method that returns this overlay with v's list rebuilt from the
+    // base and the given edit lists
+    private OverlayDigraph edited(int numOfVertices, int[] added, int[] removed, int v) {
+        return new OverlayDigraph(this, numOfVertices, added, removed, v,
+                                  row(v, added, removed));
+    }
+
+    // helper method that returns the edits of pairs as the new overlay and,
+    // if this one's reverse was already built, its reverse too. tail is the
+    // vertex whose list changes in this direction, head in the other
+    private OverlayDigraph edited(int numOfVertices, int[] added, int[] removed,
+                                  int tail, int head) {
+        OverlayDigraph next = edited(numOfVertices, added, removed, tail);
+        OverlayDigraph r = this.reverse;
+        if (r != null) {
+            OverlayDigraph nextReverse = r.edited(numOfVertices, added, removed, head);
+            nextReverse.reverse = next;
+            next.reverse = nextReverse;
+        }
+        return next;
+    }
+
+    // helper method that returns v's adjacency list in this direction under
+    // the given edits, built the same way as by the full constructor: v's
+    // base edges less the removed ones, then the added ones in order
+    private int[] row(int v, int[] added, int[] removed) {
+        int degree = v < graph.V() ? graph.outdegree(v) : 0;
+        int[] adj = new int[degree + added.length / 2];
+        int n = 0;
+        if (v < graph.V()) {
+            int last = graph.lastEdge(v);
+            for (int e = graph.firstEdge(v); e < last; e++) {
+                adj[n++] = graph.target(e);
+            }
+        }
+        for (int i = 0; i < removed.length; i += 2) {
+            if ((reversed ? removed[i + 1] : removed[i]) == v) {
+                int w = reversed ? removed[i] : removed[i + 1];
+                for (int j = 0; j < n; j++) {
+                    if (adj[j] == w) {
+                        System.arraycopy(adj, j + 1, adj, j, n - j - 1);
+                        n--;
+                        break;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < added.length; i += 2) {
+            if ((reversed ? added[i + 1] : added[i]) == v) {
+                adj[n++] = reversed ? added[i] : added[i + 1];
+            }
+        }
+        return Arrays.copyOf(adj, n);
+    }
+
+    // helper method that puts v in a free slot of the table being built and
+    // returns the slot
+    private int insert(int v) {
+        int mask = keys.length - 1;
+        int i = hash(v) & mask;
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = v + 1;
+        return i;
+    }
+
+    // helper method that returns v's adjacency list in touched, starting it
+    // from v's base edges the first time
+    private List<Integer> adjacency(Map<Integer, List<Integer>> touched, int v) {
+        List<Integer> adj = touched.get(v);
+        if (adj == null) {
+            adj = new ArrayList<Integer>();
+            if (v < graph.V()) {
+                int last = graph.lastEdge(v);
+                for (int e = graph.firstEdge(v); e < last; e++) {
+                    adj.add(graph.target(e));
+                }
+            }
+            touched.put(v, adj);
+        }
+        return adj;
+    }
+
+    public int V() {
+        return numOfVertices;
+    }
+
+    public int E() {
+        return numOfEdges;
+    }
+
+    public int firstEdge(int v) {
+        int i = slot(v);
+        return i < 0 ? graph.firstEdge(v) : firsts[i];
+    }
+
+    public int lastEdge(int v) {
+        int i = slot(v);
+        return i < 0 ? graph.lastEdge(v) : lasts[i];
+    }
+
+    public int target(int e) {
+        return e < baseEdges ? graph.target(e) : extra[e - baseEdges];
+    }
+
+    public int outdegree(int v) {
+        int i = slot(v);
+        return i < 0 ? graph.outdegree(v) : lasts[i] - firsts[i];
+    }
+
+    // the same overlay with every edge reversed
+    public OverlayDigraph reverse() {
+        OverlayDigraph r = this.reverse;
+        if (r == null) {
+            r = new OverlayDigraph(base, !reversed, numOfVertices, added, removed);
+            r.reverse = this;
+            this.reverse = r;
+        }
+        return r;
+    }
+
+    // true if v -> w is an edge
+    boolean hasEdge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        int last = lastEdge(v);
+        for (int e = firstEdge(v); e < last; e++) {
+            if (target(e) == w) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // this digraph with one more vertex, V(), that has no edges yet
+    OverlayDigraph withVertex() {
+        return edited(numOfVertices + 1, added, removed, numOfVertices, numOfVertices);
+    }
+
+    // this digraph with the edge v -> w added; it must not already be an edge
+    OverlayDigraph withEdge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        int tail = reversed ? w : v;
+        int head = reversed ? v : w;
+        int i = find(removed, tail, head);
+        if (i >= 0) {
+            return edited(numOfVertices, added, without(removed, i), v, w);
+        }
+        return edited(numOfVertices, with(added, tail, head), removed, v, w);
+    }
+
+    // this digraph without the edge v -> w, which must be an edge
+    OverlayDigraph withoutEdge(int v, int w) {
+        validateVertex(v);
+        validateVertex(w);
+        int tail = reversed ? w : v;
+        int head = reversed ? v : w;
+        int i = find(added, tail, head);
+        if (i >= 0) {
+            return edited(numOfVertices, without(added, i), removed, v, w);
+        }
+        return edited(numOfVertices, added, with(removed, tail, head), v, w);
+    }
+
+    // the digraph the edits are layered on, in this overlay's direction
+    IntDigraph base() {
+        return graph;
+    }
+
+    // number of vertices and edges added or removed since the base
+    int edits() {
+        return numOfVertices - graph.V() + (added.length + removed.length) / 2;
+    }
+
+    // bytes used by the edits and the touched adjacency lists, not counting
+    // the base
+    long bytes() {
+        return 4L * (added.length + removed.length + 3 * keys.length + extra.length);
+    }
+
+    // helper method that finds v in the touched table, or returns -1
+    private int slot(int v) {
+        if (v < 0 || v >= numOfVertices) {
+            throw new IllegalArgumentException(
+                    "vertex " + v + " is not between 0 and " + (numOfVertices - 1));
+        }
+        if (keys.length == 0) {
+            return -1;
+        }
+        return find(v);
+    }
+
+    // helper method that finds v in a touched table that is not empty, or
+    // returns -1
+    private int find(int v) {
+        int mask = keys.length - 1;
+        for (int i = hash(v) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == v + 1) {
+                return i;
+            }
+            if (keys[i] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    // helper method that throws an IllegalArgumentException unless 0 <= v < V
+    private void validateVertex(int v) {
+        if (v < 0 || v >= numOfVertices) {
+            throw new IllegalArgumentException(
+                    "vertex " + v + " is not between 0 and " + (numOfVertices - 1));
+        }
+    }
+
+    // helper method that spreads vertex ids over the table
+    private static int hash(int v) {
+        int h = v * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // helper method that returns the index of the pair (tail, head) in pairs,
+    // or -1
+    private static int find(int[] pairs, int tail, int head) {
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (pairs[i] == tail && pairs[i + 1] == head) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // helper method that returns pairs with (tail, head) appended
+    private static int[] with(int[] pairs, int tail, int head) {
+        int[] copy = Arrays.copyOf(pairs, pairs.length + 2);
+        copy[pairs.length] = tail;
+        copy[pairs.length + 1] = head;
+        return copy;
+    }
+
+    // helper method that returns pairs without the pair at index i
+    private static int[] without(int[] pairs, int i) {
+        int[] copy = new int[pairs.length - 2];
+        System.arraycopy(pairs, 0, copy, 0, i);
+        System.arraycopy(pairs, i + 2, copy, i, pairs.length - i - 2);
+        return copy;
+    }
+
+    // the base digraph and its reverse, shared by every overlay over it
+    private static final class Base {
+        private final IntDigraph forward;
+        private volatile IntDigraph backward;
+
+        Base(IntDigraph forward) {
+            if (forward == null) {
+                throw new IllegalArgumentException();
+            }
+            this.forward = forward;
+        }
+
+        IntDigraph get(boolean reversed) {
+            if (!reversed) {
+                return forward;
+            }
+            IntDigraph r = this.backward;
+            if (r == null) {
+                synchronized (this) {
+                    r = this.backward;
+                    if (r == null) {
+                        r = forward.reverse();
+                        this.backward = r;
+                    }
+                }
+            }
+            return r;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// bounded, thread-safe cache of shortest common ancestor results for pairs of
+// nouns. keys are symmetric, so (a, b) and (b, a) share one entry, and each
+// value packs both the length and the ancestor of the pair, so one lookup
+// serves both WordNet.distance() and WordNet.sca(). the cache is split into
+// independently locked segments so that concurrent callers rarely contend
+public class PairCache {
+
+    // returned by get() when the pair is not cached
+    public static final long MISS = -1L;
+
+    // which entry a full segment drops to make room for a new one
+    public enum Policy {
+        // least recently used
+        LRU,
+        // least frequently used, least recently used among equals
+        LFU
+    }
+
+    // most segments we split the cache into
+    private static final int MAX_SEGMENTS = 16;
+
+    // the segments, indexed by the low bits of the key hash
+    private final Segment[] segments;
+
+    // total capacity and eviction policy, as configured
+    private final int capacity;
+    private final Policy policy;
+
+    // counters, updated outside the segment locks
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // constructor takes the most pairs to keep and the eviction policy
+    public PairCache(int capacity, Policy policy) {
+        if (capacity < 1 || policy == null) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        // a power of two no larger than capacity, so every segment holds at
+        // least one pair and the segments never hold more than capacity
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            int segmentCapacity = capacity / count + (i < capacity % count ? 1 : 0);
+            segments[i] = policy == Policy.LRU ? new LruSegment(segmentCapacity)
+                                               : new LfuSegment(segmentCapacity);
+        }
+    }
+
+    // packs a length and an ancestor into a single cache value
+    public static long pack(int length, int ancestor) {
+        return ((long) length << 32) | (ancestor & 0xffffffffL);
+    }
+
+    // the length half of a packed value
+    public static int length(long value) {
+        return (int) (value >>> 32);
+    }
+
+    // the ancestor half of a packed value
+    public static int ancestor(long value) {
+        return (int) value;
+    }
+
+    // the packed value cached for nouns a and b, or MISS
+    public long get(String a, String b) {
+        Key key = new Key(a, b);
+        long value = segmentFor(key).get(key);
+        if (value == MISS) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    // caches the packed value for nouns a and b, evicting another pair if the
+    // segment is full
+    public void put(String a, String b, long value) {
+        Key key = new Key(a, b);
+        if (segmentFor(key).put(key, value)) {
+            evictions.increment();
+        }
+    }
+
+    // removes every cached pair
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    // a new cache with the same capacity, policy and counters holding every
+    // pair of this one except those with a noun that stale accepts, in the
+    // same eviction order. callers that may still put into this cache keep
+    // their answers out of the copy, so a pair computed before a WordNet
+    // edit can never land in the cache that serves queries after it
+    PairCache without(Predicate<String> stale) {
+        PairCache copy = new PairCache(capacity, policy);
+        copy.hits.add(hits.sum());
+        copy.misses.add(misses.sum());
+        copy.evictions.add(evictions.sum());
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].copyTo(copy.segments[i], stale);
+        }
+        return copy;
+    }
+
+    // number of pairs currently cached
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public Policy policy() {
+        return policy;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public String toString() {
+        return policy + " cache: " + size() + "/" + capacity + " pairs, "
+                + hits() + " hits, " + misses() + " misses, "
+                + evictions() + " evictions";
+    }
+
+    // helper method that picks the segment for key
+    private Segment segmentFor(Key key) {
+        int h = key.hash;
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    // unordered pair of nouns; the smaller noun is always stored first
+    private static final class Key {
+        private final String first;
+        private final String second;
+        private final int hash;
+
+        private Key(String a, String b) {
+            if (a.compareTo(b) <= 0) {
+                first = a;
+                second = b;
+            }
+            else {
+                first = b;
+                second = a;
+            }
+            hash = 31 * first.hashCode() + second.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && first.equals(other.first)
+                    && second.equals(other.second);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // one independently locked part of the cache
+    private abstract static class Segment {
+        protected final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        abstract long get(Key key);
+
+        // returns true if another pair was evicted to make room
+        abstract boolean put(Key key, long value);
+
+        abstract void clear();
+
+        abstract int size();
+
+        // puts every pair without a stale noun into target, an empty segment
+        // of the same kind and capacity
+        abstract void copyTo(Segment target, Predicate<String> stale);
+    }
+
+    // helper method that is true if either noun of key is stale
+    private static boolean stale(Key key, Predicate<String> stale) {
+        return stale.test(key.first) || stale.test(key.second);
+    }
+
+    // segment that evicts the least recently used pair, using a
+    // LinkedHashMap in access order
+    private static final class LruSegment extends Segment {
+        private final LinkedHashMap<Key, Long> map;
+
+        LruSegment(int capacity) {
+            super(capacity);
+            map = new LinkedHashMap<Key, Long>(16, 0.75f, true);
+        }
+
+        synchronized long get(Key key) {
+            Long value = map.get(key);
+            return value == null ? MISS : value;
+        }
+
+        synchronized boolean put(Key key, long value) {
+            map.put(key, value);
+            if (map.size() > capacity) {
+                Iterator<Key> eldest = map.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized void copyTo(Segment target, Predicate<String> stale) {
+            LruSegment copy = (LruSegment) target;
+            for (Map.Entry<Key, Long> entry : map.entrySet()) {
+                if (!stale(entry.getKey(), stale)) {
+                    copy.map.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    // segment that evicts the least frequently used pair, keeping one
+    // insertion-ordered set of entries per use count
+    private static final class LfuSegment extends Segment {
+        private final HashMap<Key, Entry> map = new HashMap<Key, Entry>();
+        private final HashMap<Integer, LinkedHashSet<Entry>> byCount =
+                new HashMap<Integer, LinkedHashSet<Entry>>();
+        // smallest use count of any cached entry
+        private int minCount;
+
+        LfuSegment(int capacity) {
+            super(capacity);
+        }
+
+        synchronized long get(Key key) {
+            Entry entry = map.get(key);
+            if (entry == null) {
+                return MISS;
+            }
+            touch(entry);
+            return entry.value;
+        }
+
+        synchronized boolean put(Key key, long value) {
+            Entry entry = map.get(key);
+            if (entry != null) {
+                entry.value = value;
+                touch(entry);
+                return false;
+            }
+            boolean evicted = false;
+            if (map.size() >= capacity) {
+                LinkedHashSet<Entry> rarest = byCount.get(minCount);
+                Entry victim = rarest.iterator().next();
+                rarest.remove(victim);
+                if (rarest.isEmpty()) {
+                    byCount.remove(minCount);
+                }
+                map.remove(victim.key);
+                evicted = true;
+            }
+            entry = new Entry(key, value);
+            map.put(key, entry);
+            bucket(1).add(entry);
+            minCount = 1;
+            return evicted;
+        }
+
+        synchronized void clear() {
+            map.clear();
+            byCount.clear();
+            minCount = 0;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        // keeps each pair's use count, and the order within each count
+        synchronized void copyTo(Segment target, Predicate<String> stale) {
+            LfuSegment copy = (LfuSegment) target;
+            List<Integer> counts = new ArrayList<Integer>(byCount.keySet());
+            Collections.sort(counts);
+            for (int count : counts) {
+                for (Entry entry : byCount.get(count)) {
+                    if (stale(entry.key, stale)) {
+                        continue;
+                    }
+                    Entry kept = new Entry(entry.key, entry.value);
+                    kept.count = count;
+                    copy.map.put(kept.key, kept);
+                    copy.bucket(count).add(kept);
+                    if (copy.map.size() == 1) {
+                        copy.minCount = count;
+                    }
+                }
+            }
+        }
+
+        // helper method that moves entry up to the next use count
+        private void touch(Entry entry) {
+            LinkedHashSet<Entry> current = byCount.get(entry.count);
+            current.remove(entry);
+            if (current.isEmpty()) {
+                byCount.remove(entry.count);
+                if (minCount == entry.count) {
+                    minCount += 1;
+                }
+            }
+            entry.count += 1;
+            bucket(entry.count).add(entry);
+        }
+
+        // helper method that returns the set of entries used count times
+        private LinkedHashSet<Entry> bucket(int count) {
+            LinkedHashSet<Entry> set = byCount.get(count);
+            if (set == null) {
+                set = new LinkedHashSet<Entry>();
+                byCount.put(count, set);
+            }
+            return set;
+        }
+
+        private static final class Entry {
+            private final Key key;
+            private long value;
+            private int count = 1;
+
+            private Entry(Key key, long value) {
+                this.key = key;
+                this.value = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// a MetricsListener that aggregates everything it is told: a latency histogram
+// per query method, latency histograms of single-source and multi-source
+// searches, histograms of vertices visited, widest bfs level and sources per
+// search, cache hits and misses, and the construction phase timings. comparing
+// the single-source and multi-source search latencies, and the visited counts,
+// tells apart slow queries caused by deep graphs from ones caused by nouns
+// that belong to many synsets. every update is lock-free. also readable over
+// JMX through QueryMetricsMBean once register() is called
+public class QueryMetrics implements MetricsListener, QueryMetricsMBean {
+
+    // latency in nanoseconds of each query method, by Query ordinal
+    private final Histogram[] queries = new Histogram[Query.values().length];
+
+    // search latency in nanoseconds, from at most two sources and from more
+    private final Histogram singleSource = new Histogram();
+    private final Histogram multiSource = new Histogram();
+
+    // vertices visited, widest bfs level and sources, per search. closure
+    // searches do not go level by level and report a widest level of 0
+    private final Histogram visited = new Histogram();
+    private final Histogram widest = new Histogram();
+    private final Histogram sources = new Histogram();
+    private final LongAdder indexedSearches = new LongAdder();
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    // construction phase timings in nanoseconds, in the order reported
+    private final Map<String, Long> phases =
+            Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
+    public QueryMetrics() {
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new Histogram();
+        }
+    }
+
+    public void query(Query query, long nanos) {
+        queries[query.ordinal()].record(nanos);
+    }
+
+    public void search(int sources, int visited, int widest, boolean indexed,
+                       long nanos) {
+        (sources > 2 ? multiSource : singleSource).record(nanos);
+        this.sources.record(sources);
+        if (indexed) {
+            indexedSearches.increment();
+        }
+        else {
+            this.visited.record(visited);
+            this.widest.record(widest);
+        }
+    }
+
+    public void cache(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    public void phase(String phase, long nanos) {
+        phases.put(phase, nanos);
+    }
+
+    // latency histogram of query, in nanoseconds
+    public Histogram latency(Query query) {
+        return queries[query.ordinal()];
+    }
+
+    // latency histogram of searches from more than two sources when multi is
+    // true, and of the others when it is false, in nanoseconds
+    public Histogram searchLatency(boolean multi) {
+        return multi ? multiSource : singleSource;
+    }
+
+    // vertices visited per bfs search
+    public Histogram visited() {
+        return visited;
+    }
+
+    // widest bfs level per bfs search
+    public Histogram widest() {
+        return widest;
+    }
+
+    // sources per search
+    public Histogram sources() {
+        return sources;
+    }
+
+    // the construction phase timings in nanoseconds, in the order reported
+    public Map<String, Long> phases() {
+        synchronized (phases) {
+            return new LinkedHashMap<String, Long>(phases);
+        }
+    }
+
+    // registers this object with the platform MBean server as
+    // wordnet:type=QueryMetrics,name=name
+    public void register(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    this, new ObjectName("wordnet:type=QueryMetrics,name="
+                                                 + ObjectName.quote(name)));
+        }
+        catch (JMException e) {
+            throw new IllegalArgumentException("could not register " + name, e);
+        }
+    }
+
+    public long getQueryCount() {
+        long count = 0;
+        for (Histogram h : queries) {
+            count += h.count();
+        }
+        return count;
+    }
+
+    public double getMeanQueryMicros() {
+        long count = 0;
+        double total = 0;
+        for (Histogram h : queries) {
+            count += h.count();
+            total += h.mean() * h.count();
+        }
+        return count == 0 ? 0 : total / count / 1000;
+    }
+
+    public double getP99QueryMicros() {
+        long p99 = 0;
+        for (Histogram h : queries) {
+            p99 = Math.max(p99, h.percentile(0.99));
+        }
+        return p99 / 1000.0;
+    }
+
+    public long getSearchCount() {
+        return singleSource.count() + multiSource.count();
+    }
+
+    public long getMultiSourceSearchCount() {
+        return multiSource.count();
+    }
+
+    public double getMeanVisited() {
+        return visited.mean();
+    }
+
+    public long getP99Visited() {
+        return visited.percentile(0.99);
+    }
+
+    public double getMeanWidest() {
+        return widest.mean();
+    }
+
+    public long getMaxWidest() {
+        return widest.max();
+    }
+
+    public double getCacheHitRatio() {
+        long hits = cacheHits.sum();
+        long total = hits + cacheMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public String getReport() {
+        return toString();
+    }
+
+    public void reset() {
+        for (Histogram h : queries) {
+            h.reset();
+        }
+        singleSource.reset();
+        multiSource.reset();
+        visited.reset();
+        widest.reset();
+        sources.reset();
+        indexedSearches.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+    }
+
+    // every measurement, one per line; latencies in nanoseconds
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (Query query : Query.values()) {
+            Histogram h = latency(query);
+            if (h.count() > 0) {
+                s.append(query).append(" ns: ").append(h).append('\n');
+            }
+        }
+        s.append("search ns, <= 2 sources: ").append(singleSource).append('\n');
+        s.append("search ns, > 2 sources: ").append(multiSource).append('\n');
+        s.append("indexed searches: ").append(indexedSearches.sum()).append('\n');
+        s.append("visited: ").append(visited).append('\n');
+        s.append("widest level: ").append(widest).append('\n');
+        s.append("sources: ").append(sources).append('\n');
+        s.append(String.format("cache: %d hits, %d misses, hit ratio %.3f%n",
+                               cacheHits.sum(), cacheMisses.sum(),
+                               getCacheHitRatio()));
+        for (Map.Entry<String, Long> phase : phases().entrySet()) {
+            s.append("phase ").append(phase.getKey()).append(": ")
+             .append(phase.getValue() / 1000000).append(" ms\n");
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,37 @@
+// JMX view of a QueryMetrics, registered with QueryMetrics.register(). times
+// are in microseconds
+public interface QueryMetricsMBean {
+
+    // number of public queries of every kind
+    long getQueryCount();
+
+    // mean and 99th percentile latency of every public query
+    double getMeanQueryMicros();
+
+    double getP99QueryMicros();
+
+    // number of searches, and how many of them started from more than two
+    // synsets
+    long getSearchCount();
+
+    long getMultiSourceSearchCount();
+
+    // mean and 99th percentile vertices visited per search
+    double getMeanVisited();
+
+    long getP99Visited();
+
+    // mean and largest widest bfs level per search
+    double getMeanWidest();
+
+    long getMaxWidest();
+
+    // fraction of result cache lookups that hit, or 0 if there were none
+    double getCacheHitRatio();
+
+    // the whole report, as toString() prints it
+    String getReport();
+
+    // forgets every measurement except the construction phases
+    void reset();
+}
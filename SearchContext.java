@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+// scratch space for the bidirectional bfs in ShortestCommonAncestor. the arrays
+// are sized to the digraph once and are never cleared between queries: a slot
+// only counts as visited when its stamp matches the current epoch, so starting
+// a new search is just a matter of bumping the epoch. a context is not thread
+// safe, so ShortestCommonAncestor hands out one per thread
+class SearchContext {
+
+    // the two searches, one from each vertex (or subset)
+    final Frontier a;
+    final Frontier b;
+
+    // shortest meeting distance and meeting node of the last search
+    int length;
+    int ancestor;
+
+    // most vertices in one bfs level of the last search, for metrics
+    int widest;
+
+    // current search number, shared by both frontiers
+    private int epoch;
+
+    SearchContext(int numOfVertices) {
+        a = new Frontier(numOfVertices);
+        b = new Frontier(numOfVertices);
+    }
+
+    // number of vertices this context can search
+    int capacity() {
+        return a.dist.length;
+    }
+
+    // starts a new search with no sources and no meeting node yet
+    void reset(int root) {
+        epoch += 1;
+        // once the counter wraps we can no longer trust old stamps
+        if (epoch == Integer.MAX_VALUE) {
+            a.clear();
+            b.clear();
+            epoch = 1;
+        }
+        a.begin(epoch);
+        b.begin(epoch);
+        length = Integer.MAX_VALUE;
+        ancestor = root;
+        widest = 0;
+    }
+
+    // adds v as a source of the first search
+    void seedA(int v) {
+        if (!a.reached(v)) {
+            a.visit(v, 0, v);
+            meet(v, b);
+        }
+    }
+
+    // adds v as a source of the second search
+    void seedB(int v) {
+        if (!b.reached(v)) {
+            b.visit(v, 0, v);
+            meet(v, a);
+        }
+    }
+
+    // records v as a meeting node if the other search has also reached it
+    // and it beats the best one so far
+    void meet(int v, Frontier other) {
+        if (other.reached(v)) {
+            int currDistance = a.dist[v] + b.dist[v];
+            if (currDistance < length) {
+                length = currDistance;
+                ancestor = v;
+            }
+        }
+    }
+
+    // one direction of the search: distances stamped with the epoch they were
+    // written in, the vertex each one was reached from (a source is reached
+    // from itself), and an array queue that holds every vertex at most once
+    // per search, so it never has to wrap
+    static final class Frontier {
+        final int[] dist;
+        final int[] edgeTo;
+        private final int[] stamp;
+        final int[] queue;
+        int head;
+        int tail;
+        // depth of the vertices currently waiting in the queue
+        int level;
+        private int epoch;
+
+        private Frontier(int numOfVertices) {
+            dist = new int[numOfVertices];
+            edgeTo = new int[numOfVertices];
+            stamp = new int[numOfVertices];
+            queue = new int[numOfVertices];
+        }
+
+        private void begin(int current) {
+            epoch = current;
+            head = 0;
+            tail = 0;
+            level = 0;
+        }
+
+        private void clear() {
+            Arrays.fill(stamp, 0);
+        }
+
+        boolean reached(int v) {
+            return stamp[v] == epoch;
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        void visit(int v, int distance, int from) {
+            stamp[v] = epoch;
+            dist[v] = distance;
+            edgeTo[v] = from;
+            queue[tail++] = v;
+        }
+    }
+}
@@ -1,224 +1,829 @@
 import edu.princeton.cs.algs4.In;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Stack;
 
+// thread safety: once constructed, a ShortestCommonAncestor is safe to share
+// between any number of platform or virtual threads. the digraph and the root
+// never change, the ancestor label index is published through a volatile
+// field, and every query borrows its own scratch space from a lock-free pool,
+// so no query ever takes a lock or sees another query's state
 public class ShortestCommonAncestor {
 
-    // creates Digraph
-    private Digraph digraph;
+    // immutable digraph, a compressed sparse row CompactDigraph or an
+    // OverlayDigraph of edits on top of one, so the bfs never has to box a
+    // vertex
+    private final IntDigraph digraph;
 
-    // creates boolean cycle
-    private boolean cycle;
+    // search scratch space, borrowed by one query at a time
+    private final ContextPool contexts;
 
-    // creates marked array for cycleCheck
-    private boolean[] marked;
+    // root node
+    private final int root;
 
-    // created onStack array for cycleCheck
-    private boolean[] onStack;
+    // optional ancestor label index, null until buildIndex() is called
+    private volatile AncestorLabels labels;
 
-    // root node
-    private int root;
+    // optional metrics listener, null when metrics are off
+    private volatile MetricsListener listener;
+
+    // the digraph with every edge reversed (hypernym to hyponym), null until
+    // the first walk() needs it
+    private volatile IntDigraph reverse;
+
+    // depth[v] = length of the shortest path from the root down to v, null
+    // until the first call to depth() or maxDepth()
+    private volatile int[] depths;
+
+    // largest entry of depths
+    private volatile int maxDepth;
+
+    // receives the vertices a walk() reaches, in order of distance
+    interface DistanceVisitor {
+
+        // v is at distance from the sources of the walk; returns false to
+        // stop the walk
+        boolean visit(int v, int distance);
+    }
 
     // constructor takes a digraph as an argument and checks if it is rooted
-    // and has a cycle
+    // and has a cycle. the digraph is copied into a CompactDigraph, so later
+    // changes to G do not affect this object
     public ShortestCommonAncestor(Digraph G) {
+        this(compact(G));
+    }
+
+    // constructor takes an immutable compact digraph as an argument and checks
+    // if it is rooted and has a cycle, throwing a
+    // DagValidator.InvalidDagException that names the extra roots or the
+    // cycle. the compact digraph is used directly, without a defensive copy
+    public ShortestCommonAncestor(CompactDigraph G) {
         if (G == null) {
             throw new IllegalArgumentException();
         }
-        root = 0;
-        int roots = 0;
-        for (int i = 0; i < G.V(); i++) {
-            if (G.outdegree(i) == 0) {
-                roots += 1;
-                root = i;
-            }
+        // iterative, so deep hypernym chains cannot overflow the stack
+        this.root = DagValidator.validate(G);
+        this.digraph = G;
+        this.contexts = new ContextPool(G.V());
+    }
+
+    // constructor for a digraph already known to be a rooted DAG with the
+    // given root, such as one read back from a WordNetSnapshot or checked by
+    // DagValidator. skips both the root scan and the cycle check
+    ShortestCommonAncestor(IntDigraph G, int root) {
+        this(G, root, G == null ? null : new ContextPool(G.V()));
+    }
+
+    // helper constructor that shares an existing pool of contexts sized for G
+    private ShortestCommonAncestor(IntDigraph G, int root, ContextPool contexts) {
+        if (G == null) {
+            throw new IllegalArgumentException();
         }
-        if (roots > 1) {
+        if (G.V() > 0 && (root < 0 || root >= G.V() || G.outdegree(root) != 0)) {
             throw new IllegalArgumentException();
         }
-        // creates marked array with all nodes
-        marked = new boolean[G.V()];
-        // creates onStack array with all nodes
-        onStack = new boolean[G.V()];
-        for (int v = 0; v < G.V(); v++) {
-            // if v hasn't been marked and a cycle hasn't been found yet, then
-            // do cycleCheck()
-            if (!marked[v] && !cycle) {
-                cycleCheck(G, v);
+        this.root = root;
+        this.digraph = G;
+        this.contexts = contexts;
+    }
+
+    // the same queries over G, an edited version of this digraph that is
+    // still a DAG rooted at root(). affected holds every vertex whose
+    // ancestors may differ in G, new vertices included: only their labels
+    // are recomputed if the index is built, and the rest are shared. the
+    // metrics listener carries over, and the pool of search contexts is
+    // shared, grown if G has more vertices
+    ShortestCommonAncestor withDigraph(IntDigraph G, int[] affected) {
+        ShortestCommonAncestor next = new ShortestCommonAncestor(
+                G, root, contexts.grow(G.V()));
+        next.listener = this.listener;
+        AncestorLabels index = this.labels;
+        if (index != null) {
+            next.labels = index.update(G, affected, contexts);
+        }
+        return next;
+    }
+
+    // a shortest path up the digraph from vertex v to vertex w, both
+    // included, or null if w is not an ancestor of v. the bfs only ever sees
+    // the ancestors of v, so for a new hypernym edge u -> v it is the
+    // incremental cycle check: the edge closes a cycle exactly when u is
+    // reachable from v, and the path is that cycle
+    int[] pathUp(int v, int w) {
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            SearchContext.Frontier f = ctx.a;
+            f.visit(v, 0, v);
+            while (!f.isEmpty() && !f.reached(w)) {
+                int i = f.queue[f.head++];
+                int last = digraph.lastEdge(i);
+                for (int e = digraph.firstEdge(i); e < last; e++) {
+                    int a = digraph.target(e);
+                    if (!f.reached(a)) {
+                        f.visit(a, f.dist[i] + 1, i);
+                    }
+                }
             }
+            return f.reached(w) ? path(f, w) : null;
+        }
+        finally {
+            contexts.release(ctx);
         }
-        if (cycle) {
+    }
+
+    // every descendant of vertex v (v included), in bfs order down the
+    // reversed digraph: the vertices whose ancestors change when an edge
+    // leaving v is added or removed
+    int[] descendants(int v) {
+        IntDigraph down = reverse();
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            SearchContext.Frontier f = ctx.a;
+            f.visit(v, 0, v);
+            while (!f.isEmpty()) {
+                int i = f.queue[f.head++];
+                int last = down.lastEdge(i);
+                for (int e = down.firstEdge(i); e < last; e++) {
+                    int a = down.target(e);
+                    if (!f.reached(a)) {
+                        f.visit(a, f.dist[i] + 1, i);
+                    }
+                }
+            }
+            return Arrays.copyOf(f.queue, f.tail);
+        }
+        finally {
+            contexts.release(ctx);
+        }
+    }
+
+    // the digraph this object answers queries about
+    IntDigraph digraph() {
+        return digraph;
+    }
+
+    // the root of the digraph
+    int root() {
+        return root;
+    }
+
+    // helper method that copies a Digraph into a CompactDigraph
+    private static CompactDigraph compact(Digraph G) {
+        if (G == null) {
             throw new IllegalArgumentException();
         }
-        this.digraph = new Digraph(G);
-    }
-
-    // helper method that uses Digraph d and node v, and determines
-    // if a cycle exists using v
-    private void cycleCheck(Digraph d, int v) {
-        onStack[v] = true;
-        marked[v] = true;
-        // loop through v's neighbors
-        for (int w : d.adj(v)) {
-            // if there is already a cycle in d, then return
-            if (cycle) return;
-                // if neighbor w hasn't been marked, then run cycleCheck on w
-            else if (!marked[w]) {
-                cycleCheck(d, w);
-            }
-            // if w is already onStack then there is a cycle
-            else if (onStack[w]) {
-                cycle = true;
-            }
-        }
-        onStack[v] = false;
-    }
-
-    // helper method that does a bfs search using hashmap
-    private HashMap<Integer, Integer> search(int v) {
-        // creates a HashMap to search through v's ancestors
-        HashMap<Integer, Integer> dist = new HashMap<Integer, Integer>();
-        Queue<Integer> queue = new LinkedList<Integer>();
-        queue.add(v);
-        dist.put(v, 0);
-        while (queue.peek() != null) {
-            Integer i = queue.remove();
-            for (int a : this.digraph.adj(i)) {
-                if (!dist.containsKey(a)) {
-                    queue.add(a);
-                    dist.put(a, 1 + dist.get(i));
+        return new CompactDigraph(G);
+    }
+
+    // builds the ancestor label index: for every vertex, the sorted list of
+    // its ancestors and their distances. from then on every query is a merge
+    // of two short labels instead of a graph traversal. building takes one
+    // bfs per vertex, run in parallel. returns the size of the index in bytes
+    public synchronized long buildIndex() {
+        AncestorLabels index = this.labels;
+        if (index == null) {
+            index = new AncestorLabels(digraph);
+            this.labels = index;
+        }
+        return index.bytes();
+    }
+
+    // size of the ancestor label index in bytes, or 0 if it hasn't been built
+    public long indexBytes() {
+        AncestorLabels index = this.labels;
+        return index == null ? 0 : index.bytes();
+    }
+
+    // sends the measurements of every query and search from now on to
+    // listener, or stops measuring if listener is null. while it is null the
+    // queries never read the clock
+    public void setMetricsListener(MetricsListener listener) {
+        this.listener = listener;
+    }
+
+    // helper method that finds a shortest common ancestor of v and w, using
+    // the ancestor labels if they have been built, and returns the length and
+    // ancestor packed with PairCache.pack()
+    private long search(int v, int w) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            AncestorLabels index = this.labels;
+            if (index != null) {
+                index.meet(v, w, ctx);
+            }
+            else {
+                ctx.seedA(v);
+                ctx.seedB(w);
+                bidirectionalSearch(ctx);
+            }
+            if (metrics != null) {
+                searched(metrics, ctx, 2, index != null, start);
+            }
+            return PairCache.pack(ctx.length, ctx.ancestor);
+        }
+        finally {
+            contexts.release(ctx);
+        }
+    }
+
+    // helper method that finds a shortest common ancestor of subsets A and B,
+    // using the ancestor labels if they have been built, and returns the
+    // length and ancestor packed with PairCache.pack()
+    private long search(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            AncestorLabels index = this.labels;
+            if (index != null) {
+                for (int i : subsetA) {
+                    for (int j : subsetB) {
+                        index.meet(i, j, ctx);
+                    }
+                }
+            }
+            else {
+                for (int i : subsetA) {
+                    ctx.seedA(i);
+                }
+                for (int i : subsetB) {
+                    ctx.seedB(i);
+                }
+                bidirectionalSearch(ctx);
+            }
+            if (metrics != null) {
+                searched(metrics, ctx, size(subsetA) + size(subsetB), index != null,
+                         start);
+            }
+            return PairCache.pack(ctx.length, ctx.ancestor);
+        }
+        finally {
+            contexts.release(ctx);
+        }
+    }
+
+    // helper method that finds a shortest common ancestor of the vertices in
+    // a[fromA..toA) and b[fromB..toB), the same way search(subsetA, subsetB)
+    // does, without boxing them
+    private long search(IntBuffer a, int fromA, int toA, IntBuffer b, int fromB, int toB) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            AncestorLabels index = this.labels;
+            if (index != null) {
+                for (int i = fromA; i < toA; i++) {
+                    for (int j = fromB; j < toB; j++) {
+                        index.meet(a.get(i), b.get(j), ctx);
+                    }
                 }
             }
+            else {
+                for (int i = fromA; i < toA; i++) {
+                    ctx.seedA(a.get(i));
+                }
+                for (int j = fromB; j < toB; j++) {
+                    ctx.seedB(b.get(j));
+                }
+                bidirectionalSearch(ctx);
+            }
+            if (metrics != null) {
+                searched(metrics, ctx, toA - fromA + toB - fromB, index != null, start);
+            }
+            return PairCache.pack(ctx.length, ctx.ancestor);
+        }
+        finally {
+            contexts.release(ctx);
         }
-        return dist;
+    }
+
+    // helper method that runs a bfs from each of the sources seeded into ctx
+    // in lockstep, one level at a time, always advancing the shallower
+    // frontier. a vertex reached by both searches is a common ancestor, and
+    // since every vertex not yet reached by one of the searches is at least one
+    // level past that search's frontier, we can stop as soon as the best
+    // meeting distance is no larger than the next frontier depth. the answer
+    // is left in ctx.length and ctx.ancestor
+    private void bidirectionalSearch(SearchContext ctx) {
+        SearchContext.Frontier a = ctx.a;
+        SearchContext.Frontier b = ctx.b;
+        while (!a.isEmpty() || !b.isEmpty()) {
+            // an exhausted search has already reached all of its ancestors
+            int nextA = a.isEmpty() ? Integer.MAX_VALUE : a.level + 1;
+            int nextB = b.isEmpty() ? Integer.MAX_VALUE : b.level + 1;
+            if (ctx.length <= Math.min(nextA, nextB)) {
+                return;
+            }
+            if (nextA <= nextB) {
+                expandLevel(ctx, a, b);
+            }
+            else {
+                expandLevel(ctx, b, a);
+            }
+        }
+    }
+
+    // helper method that moves one search forward by a whole level, recording
+    // a meeting node whenever it reaches a node the other search has reached
+    private void expandLevel(SearchContext ctx, SearchContext.Frontier f,
+                             SearchContext.Frontier other) {
+        int end = f.tail;
+        int next = f.level + 1;
+        if (end - f.head > ctx.widest) {
+            ctx.widest = end - f.head;
+        }
+        while (f.head < end) {
+            int i = f.queue[f.head++];
+            int last = digraph.lastEdge(i);
+            for (int e = digraph.firstEdge(i); e < last; e++) {
+                int a = digraph.target(e);
+                if (!f.reached(a)) {
+                    f.visit(a, next, i);
+                    ctx.meet(a, other);
+                }
+            }
+        }
+        f.level = next;
+    }
+
+    // helper method that reads the clock only when metrics are on
+    private static long start(MetricsListener metrics) {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    // helper method that reports a finished search to metrics
+    private static void searched(MetricsListener metrics, SearchContext ctx,
+                                 int sources, boolean indexed, long start) {
+        int visited = indexed ? 0 : ctx.a.tail + ctx.b.tail;
+        metrics.search(sources, visited, ctx.widest, indexed, System.nanoTime() - start);
+    }
+
+    // helper method that reports a finished public query to metrics
+    private static void answered(MetricsListener metrics, MetricsListener.Query query,
+                                 long start) {
+        if (metrics != null) {
+            metrics.query(query, System.nanoTime() - start);
+        }
+    }
+
+    // helper method that counts the vertices in subset
+    private static int size(Iterable<Integer> subset) {
+        int count = 0;
+        for (Iterator<Integer> it = subset.iterator(); it.hasNext(); it.next()) {
+            count += 1;
+        }
+        return count;
     }
 
     // length of shortest ancestral path between v and w
     public int length(int v, int w) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
         if (v < 0 || v >= digraph.V()) {
             throw new IllegalArgumentException();
         }
         if (w < 0 || w >= digraph.V()) {
             throw new IllegalArgumentException();
         }
-        if (v == w) {
-            return 0;
-        }
         // calls our helper method search()
-        HashMap<Integer, Integer> hash1 = search(v);
-        HashMap<Integer, Integer> hash2 = search(w);
-        // we now calculate shortest distance
-        int shortest = Integer.MAX_VALUE;
-        for (int i : hash1.keySet()) {
-            if (hash2.containsKey(i)) {
-                int currDistance = hash1.get(i) + hash2.get(i);
-                if (currDistance < shortest) {
-                    shortest = currDistance;
-                }
-            }
-        }
-        return shortest;
+        int answer = v == w ? 0 : PairCache.length(search(v, w));
+        answered(metrics, MetricsListener.Query.LENGTH, start);
+        return answer;
     }
 
     // a shortest common ancestor of vertices v and w
     public int ancestor(int v, int w) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
         if (v < 0 || v >= digraph.V()) {
             throw new IllegalArgumentException();
         }
         if (w < 0 || w >= digraph.V()) {
             throw new IllegalArgumentException();
         }
-        if (v == w) {
-            return v;
-        }
         // calls our helper method search()
-        HashMap<Integer, Integer> hash1 = search(v);
-        HashMap<Integer, Integer> hash2 = search(w);
-        // we now calculate shortest distance
-        int shortest = Integer.MAX_VALUE;
-        int shortestNode = root;
-        for (int i : hash1.keySet()) {
-            if (hash2.containsKey(i)) {
-                int currDistance = hash1.get(i) + hash2.get(i);
-                if (currDistance < shortest) {
-                    shortest = currDistance;
-                    shortestNode = i;
-                }
+        int answer = v == w ? v : PairCache.ancestor(search(v, w));
+        answered(metrics, MetricsListener.Query.ANCESTOR, start);
+        return answer;
+    }
+
+    // length of shortest ancestral path of vertex subsets A and B
+    public int lengthSubset(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        validateSubsets(subsetA, subsetB);
+        // calls our helper method search()
+        int answer = subsetA.equals(subsetB) ? 0
+                                             : PairCache.length(search(subsetA, subsetB));
+        answered(metrics, MetricsListener.Query.LENGTH_SUBSET, start);
+        return answer;
+    }
+
+    // a shortest common ancestor of vertex subsets A and B
+    public int ancestorSubset(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        validateSubsets(subsetA, subsetB);
+        // calls our helper method search()
+        int answer = subsetA.equals(subsetB) ? subsetA.iterator().next()
+                                             : PairCache.ancestor(search(subsetA, subsetB));
+        answered(metrics, MetricsListener.Query.ANCESTOR_SUBSET, start);
+        return answer;
+    }
+
+    // length, shortest common ancestor and both halves of a shortest
+    // ancestral path between v and w, all from one search. the path is read
+    // back from the vertex each bfs reached every vertex from, so it costs no
+    // extra traversal, but it does mean a bfs even when the ancestor label
+    // index is built, since the labels keep no paths
+    public AncestralPath ancestralPath(int v, int w) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        if (v < 0 || v >= digraph.V()) {
+            throw new IllegalArgumentException();
+        }
+        if (w < 0 || w >= digraph.V()) {
+            throw new IllegalArgumentException();
+        }
+        AncestralPath answer = pathSearch(IntBuffer.wrap(new int[] { v }), 0, 1,
+                                          IntBuffer.wrap(new int[] { w }), 0, 1);
+        answered(metrics, MetricsListener.Query.ANCESTRAL_PATH, start);
+        return answer;
+    }
+
+    // same as ancestralPath(v, w) for vertex subsets A and B; pathA() starts
+    // at a vertex of A and pathB() at a vertex of B
+    public AncestralPath ancestralPathSubset(Iterable<Integer> subsetA,
+                                             Iterable<Integer> subsetB) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        validateSubsets(subsetA, subsetB);
+        int[] a = toArray(subsetA);
+        int[] b = toArray(subsetB);
+        AncestralPath answer = pathSearch(IntBuffer.wrap(a), 0, a.length,
+                                          IntBuffer.wrap(b), 0, b.length);
+        answered(metrics, MetricsListener.Query.ANCESTRAL_PATH, start);
+        return answer;
+    }
+
+    // same as ancestralPathSubset() for the already checked, non-empty
+    // subsets a[fromA..toA) and b[fromB..toB)
+    AncestralPath ancestralPath(IntBuffer a, int fromA, int toA,
+                                IntBuffer b, int fromB, int toB) {
+        return pathSearch(a, fromA, toA, b, fromB, toB);
+    }
+
+    // helper method that runs the bidirectional bfs from a[fromA..toA) and
+    // b[fromB..toB) and follows each search's edgeTo links back down from
+    // the ancestor to its source
+    private AncestralPath pathSearch(IntBuffer a, int fromA, int toA,
+                                     IntBuffer b, int fromB, int toB) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            for (int i = fromA; i < toA; i++) {
+                ctx.seedA(a.get(i));
+            }
+            for (int j = fromB; j < toB; j++) {
+                ctx.seedB(b.get(j));
             }
+            bidirectionalSearch(ctx);
+            if (metrics != null) {
+                searched(metrics, ctx, toA - fromA + toB - fromB, false, start);
+            }
+            return new AncestralPath(ctx.length, ctx.ancestor, null,
+                                     path(ctx.a, ctx.ancestor), path(ctx.b, ctx.ancestor));
+        }
+        finally {
+            contexts.release(ctx);
+        }
+    }
+
+    // helper method that returns the vertices on f's bfs path from its source
+    // to v, in order
+    private static int[] path(SearchContext.Frontier f, int v) {
+        int[] path = new int[f.dist[v] + 1];
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = v;
+            v = f.edgeTo[v];
         }
-        return shortestNode;
+        return path;
     }
 
-    // helper method that does a bfs search through a subset of nodes
-    private HashMap<Integer, Integer> subsetSearch(Iterable<Integer> subset) {
-        // creates a HashMap for subset search
-        HashMap<Integer, Integer> dist = new HashMap<Integer, Integer>();
-        Queue<Integer> queue = new LinkedList<Integer>();
+    // helper method that is true if a[fromA..toA) and b[fromB..toB) hold the
+    // same vertices in the same order
+    private static boolean sameVertices(IntBuffer a, int fromA, int toA,
+                                        IntBuffer b, int fromB, int toB) {
+        if (toA - fromA != toB - fromB) {
+            return false;
+        }
+        for (int i = fromA, j = fromB; i < toA; i++, j++) {
+            if (a.get(i) != b.get(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // helper method that copies subset into an array
+    private static int[] toArray(Iterable<Integer> subset) {
+        int[] vertices = new int[size(subset)];
+        int k = 0;
         for (int i : subset) {
-            // for every node in subset A, add it to the queue and dist HashMap
-            queue.add(i);
-            dist.put(i, 0);
-        }
-        while (queue.peek() != null) {
-            Integer i = queue.remove();
-            for (int a : this.digraph.adj(i)) {
-                if (!dist.containsKey(a)) {
-                    queue.add(a);
-                    dist.put(a, 1 + dist.get(i));
-                }
+            vertices[k++] = i;
+        }
+        return vertices;
+    }
+
+    // length and a shortest common ancestor of vertex subsets A and B from a
+    // single search, packed together with PairCache.pack()
+    long lengthAndAncestorSubset(Iterable<Integer> subsetA,
+                                 Iterable<Integer> subsetB) {
+        validateSubsets(subsetA, subsetB);
+        if (subsetA.equals(subsetB)) {
+            int first = subsetA.iterator().next();
+            return PairCache.pack(0, first);
+        }
+        return search(subsetA, subsetB);
+    }
+
+    // same as lengthAndAncestorSubset(subsetA, subsetB) for the non-empty
+    // subsets a[fromA..toA) and b[fromB..toB), which the caller has already
+    // checked are vertices of the digraph, such as a NounIndex's postings
+    long lengthAndAncestorSubset(IntBuffer a, int fromA, int toA,
+                                 IntBuffer b, int fromB, int toB) {
+        if (sameVertices(a, fromA, toA, b, fromB, toB)) {
+            return PairCache.pack(0, a.get(fromA));
+        }
+        return search(a, fromA, toA, b, fromB, toB);
+    }
+
+    // every ancestor of vertex subset A (the subset included) with its
+    // distance from the subset, packed as (ancestor << 32) | distance and
+    // sorted by ancestor. one bfs computes it; closures of two subsets can then
+    // be met with meet() as often as needed without traversing the digraph
+    long[] closure(Iterable<Integer> subset) {
+        validateSubsets(subset, subset);
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            for (int i : subset) {
+                ctx.seedA(i);
+            }
+            long[] closure = AncestorLabels.closure(digraph, ctx);
+            if (metrics != null) {
+                searched(metrics, ctx, size(subset), false, start);
             }
+            return closure;
+        }
+        finally {
+            contexts.release(ctx);
         }
-        return dist;
     }
 
-    // length of shortest ancestral path of vertex subsets A and B
-    public int lengthSubset(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
-        if (subsetA == null || subsetB == null) {
-            throw new IllegalArgumentException();
+    // same as closure(subset) for the already checked, non-empty subset
+    // ids[from..to)
+    long[] closure(IntBuffer ids, int from, int to) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            for (int i = from; i < to; i++) {
+                ctx.seedA(ids.get(i));
+            }
+            long[] closure = AncestorLabels.closure(digraph, ctx);
+            if (metrics != null) {
+                searched(metrics, ctx, to - from, false, start);
+            }
+            return closure;
         }
-        if (!subsetA.iterator().hasNext() || !subsetB.iterator().hasNext()) {
-            throw new IllegalArgumentException();
+        finally {
+            contexts.release(ctx);
         }
-        for (Integer i : subsetA) {
-            if (i == null) {
-                throw new IllegalArgumentException();
+    }
+
+    // visits every vertex in order of its shortest ancestral path length from
+    // the non-empty vertex subset ids[from..to), each vertex once, until
+    // visitor returns false. that length is a climb up the digraph to a common
+    // ancestor followed by a descent down the reversed digraph, so the walk
+    // runs two bfs in step, level by level: the up search from the subset,
+    // and the down search from every vertex the up search reaches, at the
+    // distance it reaches it. every edge has the same length, so taking whole
+    // levels in turn already visits the vertices in order of distance and no
+    // priority queue is needed
+    void walk(IntBuffer ids, int from, int to, DistanceVisitor visitor) {
+        IntDigraph down = reverse();
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            SearchContext.Frontier up = ctx.a;
+            SearchContext.Frontier across = ctx.b;
+            boolean more = true;
+            for (int i = from; i < to && more; i++) {
+                int v = ids.get(i);
+                if (!up.reached(v)) {
+                    up.visit(v, 0, v);
+                    across.visit(v, 0, v);
+                    more = visitor.visit(v, 0);
+                }
             }
-            if (i < 0 || i >= this.digraph.V()) {
-                throw new IllegalArgumentException();
+            for (int next = 1; more && !(up.isEmpty() && across.isEmpty()); next++) {
+                int endUp = up.tail;
+                int endAcross = across.tail;
+                ctx.widest = Math.max(ctx.widest, endAcross - across.head);
+                while (more && up.head < endUp) {
+                    int v = up.queue[up.head++];
+                    int last = digraph.lastEdge(v);
+                    for (int e = digraph.firstEdge(v); e < last && more; e++) {
+                        int w = digraph.target(e);
+                        if (!up.reached(w)) {
+                            up.visit(w, next, v);
+                            if (!across.reached(w)) {
+                                across.visit(w, next, v);
+                                more = visitor.visit(w, next);
+                            }
+                        }
+                    }
+                }
+                while (more && across.head < endAcross) {
+                    int v = across.queue[across.head++];
+                    int last = down.lastEdge(v);
+                    for (int e = down.firstEdge(v); e < last && more; e++) {
+                        int w = down.target(e);
+                        if (!across.reached(w)) {
+                            across.visit(w, next, v);
+                            more = visitor.visit(w, next);
+                        }
+                    }
+                }
+            }
+            if (metrics != null) {
+                searched(metrics, ctx, to - from, false, start);
             }
         }
-        for (Integer i : subsetB) {
-            if (i == null) {
-                throw new IllegalArgumentException();
+        finally {
+            contexts.release(ctx);
+        }
+    }
+
+    // helper method that reverses the digraph the first time it is needed
+    private IntDigraph reverse() {
+        IntDigraph down = this.reverse;
+        if (down == null) {
+            synchronized (this) {
+                down = this.reverse;
+                if (down == null) {
+                    down = digraph.reverse();
+                    this.reverse = down;
+                }
             }
-            if (i < 0 || i >= this.digraph.V()) {
-                throw new IllegalArgumentException();
+        }
+        return down;
+    }
+
+    // length of the shortest path from the root down to vertex v, so the root
+    // has depth 0
+    public int depth(int v) {
+        if (v < 0 || v >= digraph.V()) {
+            throw new IllegalArgumentException();
+        }
+        return depths()[v];
+    }
+
+    // largest depth() of any vertex
+    public int maxDepth() {
+        depths();
+        return maxDepth;
+    }
+
+    // helper method that computes the depth of every vertex the first time it
+    // is needed, with one bfs from the root down the reversed digraph
+    private int[] depths() {
+        int[] depth = this.depths;
+        if (depth == null) {
+            synchronized (this) {
+                depth = this.depths;
+                if (depth == null) {
+                    IntDigraph down = reverse();
+                    depth = new int[digraph.V()];
+                    int[] queue = new int[digraph.V()];
+                    Arrays.fill(depth, -1);
+                    int head = 0;
+                    int tail = 0;
+                    if (digraph.V() > 0) {
+                        depth[root] = 0;
+                        queue[tail++] = root;
+                    }
+                    while (head < tail) {
+                        int v = queue[head++];
+                        int last = down.lastEdge(v);
+                        for (int e = down.firstEdge(v); e < last; e++) {
+                            int w = down.target(e);
+                            if (depth[w] < 0) {
+                                depth[w] = depth[v] + 1;
+                                queue[tail++] = w;
+                            }
+                        }
+                    }
+                    this.maxDepth = tail == 0 ? 0 : depth[queue[tail - 1]];
+                    this.depths = depth;
+                }
             }
         }
-        if (subsetA.equals(subsetB)) {
-            return 0;
-        }
-        // calls our helper method subsetSearch()
-        HashMap<Integer, Integer> hash1 = subsetSearch(subsetA);
-        HashMap<Integer, Integer> hash2 = subsetSearch(subsetB);
-        // calculate shortest
-        int shortest = Integer.MAX_VALUE;
-        for (int i : hash1.keySet()) {
-            if (hash2.containsKey(i)) {
-                int currDistance = hash1.get(i) + hash2.get(i);
-                if (currDistance < shortest) {
-                    shortest = currDistance;
+        return depth;
+    }
+
+    // length and a shortest common ancestor of the already checked, non-empty
+    // subset ids[from..to) and another subset given by its closure, packed
+    // together with PairCache.pack(). the closure already holds the exact
+    // distance of every ancestor of the other subset, so only ids is searched,
+    // looking each vertex it reaches up in the closure, and the search stops
+    // as soon as its next level cannot beat the best meeting found
+    long lengthAndAncestor(long[] closure, IntBuffer ids, int from, int to) {
+        MetricsListener metrics = this.listener;
+        long start = start(metrics);
+        SearchContext ctx = contexts.borrow();
+        try {
+            ctx.reset(root);
+            SearchContext.Frontier f = ctx.a;
+            for (int i = from; i < to; i++) {
+                int v = ids.get(i);
+                if (!f.reached(v)) {
+                    f.visit(v, 0, v);
+                    meetClosure(ctx, closure, v, 0);
                 }
             }
+            while (!f.isEmpty() && ctx.length > f.level + 1) {
+                int end = f.tail;
+                int next = f.level + 1;
+                while (f.head < end) {
+                    int i = f.queue[f.head++];
+                    int last = digraph.lastEdge(i);
+                    for (int e = digraph.firstEdge(i); e < last; e++) {
+                        int w = digraph.target(e);
+                        if (!f.reached(w)) {
+                            f.visit(w, next, i);
+                            meetClosure(ctx, closure, w, next);
+                        }
+                    }
+                }
+                f.level = next;
+            }
+            if (metrics != null) {
+                searched(metrics, ctx, to - from, false, start);
+            }
+            return PairCache.pack(ctx.length, ctx.ancestor);
+        }
+        finally {
+            contexts.release(ctx);
         }
-        return shortest;
     }
 
-    // a shortest common ancestor of vertex subsets A and B
-    public int ancestorSubset(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+    // helper method that records v, reached at distance by the search, as a
+    // meeting node if closure holds it and it beats the best one so far
+    private static void meetClosure(SearchContext ctx, long[] closure, int v,
+                                    int distance) {
+        int k = Arrays.binarySearch(closure, (long) v << 32);
+        if (k < 0) {
+            k = -k - 1;
+        }
+        if (k < closure.length && (int) (closure[k] >>> 32) == v) {
+            int currDistance = distance + (int) closure[k];
+            if (currDistance < ctx.length) {
+                ctx.length = currDistance;
+                ctx.ancestor = v;
+            }
+        }
+    }
+
+    // length and a shortest common ancestor of two subsets given their
+    // closures, packed together with PairCache.pack()
+    long meet(long[] closureA, long[] closureB) {
+        return AncestorLabels.meet(closureA, 0, closureA.length,
+                                   closureB, 0, closureB.length,
+                                   PairCache.pack(Integer.MAX_VALUE, root));
+    }
+
+    // helper method that throws an IllegalArgumentException unless both
+    // subsets are non-empty and every vertex in them is in the digraph
+    private void validateSubsets(Iterable<Integer> subsetA,
+                                 Iterable<Integer> subsetB) {
         if (subsetA == null || subsetB == null) {
             throw new IllegalArgumentException();
         }
@@ -229,7 +834,7 @@ public class ShortestCommonAncestor {
             if (i == null) {
                 throw new IllegalArgumentException();
             }
-            if (i < 0 || i >= this.digraph.V()) {
+            if (i < 0 || i >= digraph.V()) {
                 throw new IllegalArgumentException();
             }
         }
@@ -237,31 +842,10 @@ public class ShortestCommonAncestor {
             if (i == null) {
                 throw new IllegalArgumentException();
             }
-            if (i < 0 || i >= this.digraph.V()) {
+            if (i < 0 || i >= digraph.V()) {
                 throw new IllegalArgumentException();
             }
         }
-        if (subsetA.equals(subsetB)) {
-            for (Integer i : subsetA) {
-                return i;
-            }
-        }
-        // calls our helper method subsetSearch()
-        HashMap<Integer, Integer> hash1 = subsetSearch(subsetA);
-        HashMap<Integer, Integer> hash2 = subsetSearch(subsetB);
-        // calculate shortest
-        int shortest = Integer.MAX_VALUE;
-        int shortestNode = root;
-        for (int i : hash1.keySet()) {
-            if (hash2.containsKey(i)) {
-                int currDistance = hash1.get(i) + hash2.get(i);
-                if (currDistance < shortest) {
-                    shortest = currDistance;
-                    shortestNode = i;
-                }
-            }
-        }
-        return shortestNode;
     }
 
     // unit testing (required)
@@ -288,6 +872,10 @@ public class ShortestCommonAncestor {
         test2.push(6);
         System.out.println(sca.lengthSubset(test1, test2));
         System.out.println(sca.ancestorSubset(test1, test2));
+        // the same queries answered from the ancestor label index
+        System.out.println("index bytes = " + sca.buildIndex());
+        System.out.println(sca.lengthSubset(test1, test2));
+        System.out.println(sca.ancestorSubset(test1, test2));
     }
 }
 
@@ -0,0 +1,163 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+// seeded generator of synthetic, WordNet-like taxonomies, written in the
+// synsets.txt / hypernyms.txt format. synset 0 is the root ("entity"); every
+// other synset i gets one hypernym chosen in breadth-first order, so that each
+// synset with hyponyms has on average branching of them, and with probability
+// multiParent a second hypernym among the synsets before i. once the tree
+// reaches maxDepth, the rest of the synsets are spread at random under the
+// synsets one level above it, so the taxonomy grows wider instead of deeper.
+// every edge points to a smaller id, so the digraph is always a rooted DAG.
+// each synset has the noun s<i>, sometimes a synonym or two (s<i>_1, s<i>_2),
+// and sometimes also the noun of an earlier synset, so some nouns belong to
+// several synsets the way polysemous nouns do in WordNet. both files are
+// written in one streaming pass, so the generator only keeps the first synset
+// id of each level, and the same arguments always produce the same files
+public class TaxonomyGenerator {
+
+    // chance that a synset gets a synonym, and a second one
+    private static final double SYNONYM = 0.3;
+    private static final double SECOND_SYNONYM = 0.1;
+
+    // chance that a synset also contains the noun of an earlier synset
+    private static final double POLYSEMY = 0.1;
+
+    private final int numOfVertices;
+    private final double branching;
+    private final int maxDepth;
+    private final double multiParent;
+    private final long seed;
+
+    // constructor takes the number of synsets, the mean number of hyponyms of
+    // a synset that has any (at least 1; exactly 1 gives a single chain), the
+    // fraction of synsets with a second hypernym and the random seed. the
+    // depth is only limited by V
+    public TaxonomyGenerator(int V, double branching, double multiParent, long seed) {
+        this(V, branching, Integer.MAX_VALUE, multiParent, seed);
+    }
+
+    // constructor takes the number of synsets, the mean number of hyponyms of
+    // a synset that has any, the largest depth of a synset below the root (at
+    // least 1), the fraction of synsets with a second hypernym and the seed
+    public TaxonomyGenerator(int V, double branching, int maxDepth,
+                             double multiParent, long seed) {
+        if (V < 1) {
+            throw new IllegalArgumentException("V must be positive");
+        }
+        if (!(branching >= 1)) {
+            throw new IllegalArgumentException("branching must be at least 1");
+        }
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive");
+        }
+        if (!(multiParent >= 0 && multiParent <= 1)) {
+            throw new IllegalArgumentException("multiParent must be between 0 and 1");
+        }
+        this.numOfVertices = V;
+        this.branching = branching;
+        this.maxDepth = maxDepth;
+        this.multiParent = multiParent;
+        this.seed = seed;
+    }
+
+    // writes the synsets file and the hypernyms file, replacing them if they
+    // exist
+    public void write(Path synsets, Path hypernyms) {
+        if (synsets == null || hypernyms == null) {
+            throw new IllegalArgumentException("argument is null");
+        }
+        try (BufferedWriter s = Files.newBufferedWriter(synsets, StandardCharsets.UTF_8);
+             BufferedWriter h = Files.newBufferedWriter(hypernyms, StandardCharsets.UTF_8)) {
+            Random random = new Random(seed);
+            s.write("0,entity,the root of the synthetic taxonomy\n");
+            // parent takes the next quota synsets as hyponyms. every synset
+            // before parent took at least one, so parent is always below i.
+            // breadth-first order keeps depths sorted by id, so level d is
+            // the ids from levelStart[d] up to levelStart[d + 1]
+            int parent = 0;
+            int parentDepth = 0;
+            int quota = hyponyms(random);
+            int[] levelStart = new int[16];
+            int deepest = 0;
+            boolean full = false;
+            for (int i = 1; i < numOfVertices; i++) {
+                int hypernym;
+                int depth;
+                if (!full && quota == 0) {
+                    parent += 1;
+                    quota = hyponyms(random);
+                    if (parentDepth < deepest && levelStart[parentDepth + 1] <= parent) {
+                        parentDepth += 1;
+                    }
+                    full = parentDepth == maxDepth;
+                }
+                if (full) {
+                    int from = levelStart[maxDepth - 1];
+                    hypernym = from + random.nextInt(levelStart[maxDepth] - from);
+                    depth = maxDepth;
+                }
+                else {
+                    quota -= 1;
+                    hypernym = parent;
+                    depth = parentDepth + 1;
+                }
+                if (depth > deepest) {
+                    deepest = depth;
+                    if (deepest == levelStart.length) {
+                        levelStart = Arrays.copyOf(levelStart, 2 * deepest);
+                    }
+                    levelStart[deepest] = i;
+                }
+                h.write(i + "," + hypernym);
+                if (i > 1 && random.nextDouble() < multiParent) {
+                    int second = random.nextInt(i - 1);
+                    h.write("," + (second < hypernym ? second : second + 1));
+                }
+                h.write('\n');
+                s.write(i + ",s" + i);
+                if (random.nextDouble() < SYNONYM) {
+                    s.write(" s" + i + "_1");
+                    if (random.nextDouble() < SECOND_SYNONYM / SYNONYM) {
+                        s.write(" s" + i + "_2");
+                    }
+                }
+                if (i > 1 && random.nextDouble() < POLYSEMY) {
+                    s.write(" s" + (1 + random.nextInt(i - 1)));
+                }
+                s.write(",synthetic synset " + i + " under " + hypernym + "\n");
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + synsets
+                                                       + " and " + hypernyms, e);
+        }
+    }
+
+    // helper method that draws how many hyponyms the next synset in breadth
+    // first order gets: between 1 and 2 * branching - 1, so branching on average
+    private int hyponyms(Random random) {
+        return 1 + (int) (random.nextDouble() * (2 * branching - 1));
+    }
+
+    // test client: java TaxonomyGenerator V branching maxDepth multiParent
+    // seed synsets.txt hypernyms.txt
+    public static void main(String[] args) {
+        int numOfVertices = Integer.parseInt(args[0]);
+        double branching = Double.parseDouble(args[1]);
+        int maxDepth = Integer.parseInt(args[2]);
+        double multiParent = Double.parseDouble(args[3]);
+        long seed = Long.parseLong(args[4]);
+        long start = System.nanoTime();
+        new TaxonomyGenerator(numOfVertices, branching, maxDepth, multiParent, seed)
+                .write(Paths.get(args[5]), Paths.get(args[6]));
+        System.out.println("wrote " + numOfVertices + " synsets in "
+                                   + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+// read-only table of strings by index, the way WordNet reads synsets,
+// glosses and the sorted noun table. of() wraps an on-heap String[];
+// OffHeapStore keeps the UTF-8 bytes of a table in a direct or mapped
+// buffer and builds a String only when one is asked for
+interface TextTable {
+
+    // number of strings
+    int size();
+
+    // the string at index i
+    String get(int i);
+
+    // true if the string at index i equals s, without building a String
+    // where the table can avoid it
+    boolean matches(int i, String s);
+
+    // bytes this table keeps outside String objects, such as off-heap UTF-8
+    long bytes();
+
+    // a table with s appended after every string of this one. this table is
+    // left unchanged and shared, not copied, so any number of edited tables
+    // can sit on one large one; only the appended strings are copied, until
+    // there are enough of them that the whole table is folded into one array
+    default TextTable with(String s) {
+        return new Appended(this, new String[] { s });
+    }
+
+    // every string of this table, in order, as a new array
+    default String[] toArray() {
+        String[] strings = new String[size()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = get(i);
+        }
+        return strings;
+    }
+
+    // a table over strings, which must not be modified afterwards
+    static TextTable of(String[] strings) {
+        return new OnHeap(strings);
+    }
+
+    // table over a String[]
+    final class OnHeap implements TextTable {
+        private final String[] strings;
+
+        private OnHeap(String[] strings) {
+            if (strings == null) {
+                throw new IllegalArgumentException();
+            }
+            this.strings = strings;
+        }
+
+        public int size() {
+            return strings.length;
+        }
+
+        public String get(int i) {
+            return strings[i];
+        }
+
+        public boolean matches(int i, String s) {
+            return strings[i].equals(s);
+        }
+
+        public long bytes() {
+            return 0;
+        }
+
+        public String[] toArray() {
+            return strings.clone();
+        }
+    }
+
+    // a table followed by a few strings added after it was built
+    final class Appended implements TextTable {
+
+        // past one appended string in this many of the table, with() folds
+        // the table into a fresh OnHeap one instead of copying an ever
+        // longer tail, so n appends copy O(n) strings in all
+        private static final int FOLD_FRACTION = 16;
+
+        private final TextTable base;
+        private final String[] tail;
+
+        private Appended(TextTable base, String[] tail) {
+            this.base = base;
+            this.tail = tail;
+        }
+
+        public int size() {
+            return base.size() + tail.length;
+        }
+
+        public String get(int i) {
+            int n = base.size();
+            return i < n ? base.get(i) : tail[i - n];
+        }
+
+        public boolean matches(int i, String s) {
+            int n = base.size();
+            return i < n ? base.matches(i, s) : tail[i - n].equals(s);
+        }
+
+        public long bytes() {
+            return base.bytes();
+        }
+
+        public TextTable with(String s) {
+            String[] copy = Arrays.copyOf(tail, tail.length + 1);
+            copy[tail.length] = s;
+            if ((long) copy.length * FOLD_FRACTION > base.size()) {
+                String[] strings = Arrays.copyOf(base.toArray(), base.size() + copy.length);
+                System.arraycopy(copy, 0, strings, base.size(), copy.length);
+                return new OnHeap(strings);
+            }
+            return new Appended(base, copy);
+        }
+    }
+}
@@ -1,68 +1,304 @@
-import edu.princeton.cs.algs4.In;
-
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Stack;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
+// thread safety: a WordNet is safe to share between any number of platform or
+// virtual threads once its constructor returns. the noun index, the synset
+// and gloss arrays, the ShortestCommonAncestor and the two optional caches
+// are held together by one immutable State, published through a volatile
+// field. every query reads that field once and answers from the State it
+// read, so it never mixes parts of two versions, and queries take no locks,
+// except inside the striped caches when they are enabled. the mutation
+// methods and the methods that swap a cache are synchronized with each
+// other; each one builds a new State and publishes it with one write
 public class WordNet {
 
-    // creates a HashMap of Strings and Integers that store nouns and
-    // their ids
-    private HashMap<String, Stack<Integer>> nounsMap;
+    // past this many edits per vertex of the base digraph, the overlay of
+    // edits is folded into a fresh CompactDigraph
+    private static final int FOLD_FRACTION = 16;
+
+    // everything a query reads, published as one unit
+    private volatile State state;
+
+    // similarity measures computed by similarity(). each one is a function of
+    // the distance between the two nouns and the depth of their shortest
+    // common ancestor, counting the root as depth 1 as WordNet tools usually
+    // do; depths are shortest paths from the root
+    public enum Similarity {
+        // 1 / (distance + 1): 1 for synonyms, falling towards 0
+        PATH,
+        // Wu-Palmer: 2 * depth(sca) / (distance + 2 * depth(sca)), between 0
+        // and 1, so pairs that meet deep in the taxonomy score higher than
+        // pairs at the same distance that meet near the root
+        WU_PALMER,
+        // Leacock-Chodorow: -log((distance + 1) / (2 * D)), where D is the
+        // depth of the deepest synset; log(2 * D) for synonyms
+        LEACOCK_CHODOROW
+    }
 
-    // creates a HashMap of Integers and Strings that store synsets and their
-    // ids
-    private HashMap<Integer, String> synsetMap;
+    // how long each phase of building this WordNet took, in nanoseconds
+    private final Map<String, Long> phases;
 
-    // creates a ShortestCommonAncestor object
-    private ShortestCommonAncestor sca;
+    // optional metrics listener, null when metrics are off
+    private volatile MetricsListener listener;
 
-    // creates a digraph
-    private Digraph digraph;
+    // an overlay with no edits over the digraph the last tenant was created
+    // from, so that every tenant of that digraph shares one reverse of it;
+    // null until newTenant() is first called
+    private OverlayDigraph tenantBase;
 
-    // constructor takes the name of the two input files
+    // constructor takes the name of the two input files. both files are read
+    // with WordNetParser, which maps them and tokenizes the bytes directly
     public WordNet(String synsets, String hypernyms) {
-        this.nounsMap = new HashMap<String, Stack<Integer>>();
-        this.synsetMap = new HashMap<Integer, String>();
-        In in = new In(synsets);
-        In in1 = new In(hypernyms);
-        int count = 0;
+        this(newPhases(), synsets, hypernyms);
+    }
+
+    // constructor takes the phase timings to fill in and the two file names
+    private WordNet(Map<String, Long> phases, String synsets, String hypernyms) {
         // reads through synsets
-        while (in.hasNextLine()) {
-            count += 1;
-            String[] split = in.readLine().split(",");
-            int id = Integer.parseInt(split[0]);
-            String nouns = split[1];
-            synsetMap.put(id, nouns);
-            String[] nounsSplit = nouns.split(" ");
-            for (int i = 0; i < nounsSplit.length; i++) {
-                if (nounsMap.get(nounsSplit[i]) == null) {
-                    Stack<Integer> toAdd = new Stack<Integer>();
-                    toAdd.push(id);
-                    nounsMap.put(nounsSplit[i], toAdd);
-                }
-                else {
-                    Stack<Integer> toAdd = nounsMap.get(nounsSplit[i]);
-                    toAdd.push(id);
-                    nounsMap.put(nounsSplit[i], toAdd);
-                }
-            }
+        this(phases, timed(phases, "parse synsets",
+                           () -> WordNetParser.parseSynsets(synsets)), hypernyms);
+    }
+
+    // constructor takes the parsed synsets and the name of the hypernyms file
+    private WordNet(Map<String, Long> phases, WordNetParser.Synsets parsed,
+                    String hypernyms) {
+        // reads through hypernyms straight into a compact digraph
+        this(parsed.synsets, parsed.glosses,
+             timed(phases, "index nouns",
+                   () -> new NounIndex(parsed.nouns, parsed.nounIds, false)),
+             checked(phases, hypernyms, parsed.count), phases);
+    }
+
+    // constructor takes a snapshot read back from disk; its digraph was
+    // already checked when the snapshot was written
+    private WordNet(WordNetSnapshot snapshot, Map<String, Long> phases) {
+        this(snapshot.synsets, snapshot.glosses,
+             timed(phases, "index nouns",
+                   () -> new NounIndex(snapshot.nouns, snapshot.postingOffsets,
+                                       snapshot.postings)),
+             new ShortestCommonAncestor(snapshot.digraph, snapshot.root), phases);
+    }
+
+    // constructor takes an off-heap store; its digraph was already checked
+    // when the store was written
+    private WordNet(OffHeapStore store, Map<String, Long> phases) {
+        this(store.synsets, store.glosses, store.nouns,
+             new ShortestCommonAncestor(store.digraph, store.root), phases);
+    }
+
+    // constructor takes every part of a loaded WordNet
+    private WordNet(String[] synsets, String[] glosses, NounIndex nouns,
+                    ShortestCommonAncestor sca, Map<String, Long> phases) {
+        this(TextTable.of(synsets), TextTable.of(glosses), nouns, sca, phases);
+    }
+
+    // constructor takes every part of a loaded WordNet, wherever they are
+    // stored
+    private WordNet(TextTable synsets, TextTable glosses, NounIndex nouns,
+                    ShortestCommonAncestor sca, Map<String, Long> phases) {
+        this.state = new State(synsets, glosses, nouns, sca, null, null);
+        this.phases = phases;
+    }
+
+    // one immutable version of everything a query reads. the caches
+    // themselves are mutable, but belong to this version only: an edit
+    // copies what is still valid into the caches of the next State
+    private static final class State {
+
+        // synsets.get(id) = synset (second field of synsets.txt) of synset id
+        private final TextTable synsets;
+
+        // glosses.get(id) = gloss (third field of synsets.txt) of synset id
+        private final TextTable glosses;
+
+        // dictionary-encoded index from nouns to dense noun ids and from
+        // noun ids to the ids of the synsets they belong to
+        private final NounIndex nouns;
+
+        // creates a ShortestCommonAncestor object
+        private final ShortestCommonAncestor sca;
+
+        // optional cache of distance() and sca() results, null when disabled
+        private final PairCache cache;
+
+        // optional cache of the ancestor closures of polysemous nouns, null
+        // when disabled
+        private final ClosureCache closures;
+
+        private State(TextTable synsets, TextTable glosses, NounIndex nouns,
+                      ShortestCommonAncestor sca, PairCache cache,
+                      ClosureCache closures) {
+            this.synsets = synsets;
+            this.glosses = glosses;
+            this.nouns = nouns;
+            this.sca = sca;
+            this.cache = cache;
+            this.closures = closures;
+        }
+
+        private State withCache(PairCache cache) {
+            return new State(synsets, glosses, nouns, sca, cache, closures);
         }
-        this.digraph = new Digraph(count);
-        // reads through hypernyms
-        while (in1.hasNextLine()) {
-            String[] split = in1.readLine().split(",");
-            String id1 = split[0];
-            for (int i = 1; i < split.length; i++) {
-                digraph.addEdge(Integer.parseInt(id1),
-                                Integer.parseInt(split[i]));
+
+        private State withClosures(ClosureCache closures) {
+            return new State(synsets, glosses, nouns, sca, cache, closures);
+        }
+    }
+
+    // helper method that returns an empty, thread-safe map of phase timings
+    // that keeps the order the phases finished in
+    private static Map<String, Long> newPhases() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+    }
+
+    // helper method that runs one construction phase and records how long it
+    // took in phases
+    private static <T> T timed(Map<String, Long> phases, String phase,
+                               Supplier<T> step) {
+        long start = System.nanoTime();
+        T result = step.get();
+        phases.put(phase, System.nanoTime() - start);
+        return result;
+    }
+
+    // helper method that parses the hypernyms file and checks that it is a
+    // rooted DAG, timing each step
+    private static ShortestCommonAncestor checked(Map<String, Long> phases,
+                                                  String hypernyms, int count) {
+        CompactDigraph digraph = timed(phases, "parse hypernyms",
+                                       () -> WordNetParser.parseHypernyms(hypernyms,
+                                                                          count));
+        return timed(phases, "check digraph", () -> new ShortestCommonAncestor(digraph));
+    }
+
+    // loads the two input files with a pipelined, multi-threaded loader on the
+    // common fork-join pool: the two files are parsed at the same time, the
+    // noun table is sorted with a parallel sort while the digraph is checked
+    // with DagValidator's parallel topological sort, and no step waits for
+    // more than it needs. the result is identical to new WordNet(synsets,
+    // hypernyms)
+    public static WordNet loadParallel(String synsets, String hypernyms) {
+        if (synsets == null || hypernyms == null) {
+            throw new IllegalArgumentException();
+        }
+        Map<String, Long> phases = newPhases();
+        CompletableFuture<WordNetParser.Synsets> parsing = CompletableFuture
+                .supplyAsync(() -> timed(phases, "parse synsets",
+                                         () -> WordNetParser.parseSynsets(synsets)));
+        CompletableFuture<WordNetParser.Edges> edges = CompletableFuture
+                .supplyAsync(() -> timed(phases, "parse hypernyms",
+                                         () -> WordNetParser.parseHypernymEdges(
+                                                 hypernyms, -1)));
+        CompletableFuture<NounIndex> index = parsing
+                .thenApplyAsync(parsed -> timed(phases, "index nouns",
+                                                () -> new NounIndex(parsed.nouns,
+                                                                    parsed.nounIds,
+                                                                    true)));
+        CompletableFuture<ShortestCommonAncestor> checked = parsing
+                .thenCombineAsync(edges, (parsed, parsedEdges) -> timed(
+                        phases, "check digraph", () -> {
+                            CompactDigraph digraph = parsedEdges.toCompact(parsed.count);
+                            return new ShortestCommonAncestor(
+                                    digraph, DagValidator.parallelRoot(digraph));
+                        }));
+        try {
+            WordNetParser.Synsets parsed = parsing.join();
+            return new WordNet(parsed.synsets, parsed.glosses, index.join(),
+                               checked.join(), phases);
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw e;
+        }
+    }
+
+    // loads a WordNet from a snapshot written by writeSnapshot(), without
+    // parsing synsets.txt and hypernyms.txt or validating the digraph again
+    public static WordNet fromSnapshot(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException();
+        }
+        Map<String, Long> phases = newPhases();
+        return new WordNet(timed(phases, "read snapshot", () -> WordNetSnapshot.read(file)),
+                           phases);
+    }
+
+    // writes everything this WordNet was loaded from to a binary snapshot
+    // that fromSnapshot() can load back
+    public void writeSnapshot(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException();
         }
-        sca = new ShortestCommonAncestor(this.digraph);
+        State s = this.state;
+        IntDigraph digraph = s.sca.digraph();
+        CompactDigraph compact = digraph instanceof CompactDigraph
+                                 ? (CompactDigraph) digraph : new CompactDigraph(digraph);
+        NounIndex nouns = s.nouns.flat();
+        new WordNetSnapshot(s.synsets.toArray(), s.glosses.toArray(),
+                            nouns.table().toArray(), toArray(nouns.postingOffsets()),
+                            toArray(nouns.postings()), compact, s.sca.root()).write(file);
     }
 
-    // the set of all WordNet nouns
+    // a copy of this WordNet whose digraph, noun index, synsets and glosses
+    // live outside the Java heap in an OffHeapStore: in direct memory if file
+    // is null, or else in file, which openOffHeap() can map again later. the
+    // copy answers every query exactly as this WordNet does, starts with its
+    // caches off, and keeps any synsets or edges added to it later on the
+    // heap
+    public WordNet toOffHeap(Path file) {
+        State s = this.state;
+        Map<String, Long> phases = newPhases();
+        OffHeapStore store = timed(phases, "copy off heap",
+                                   () -> OffHeapStore.copy(s.sca.digraph(), s.sca.root(),
+                                                           s.nouns.flat(), s.synsets,
+                                                           s.glosses, file));
+        return new WordNet(store, phases);
+    }
+
+    // maps a store written by toOffHeap() back into memory; nothing is
+    // parsed or copied onto the heap, and the operating system pages the
+    // file in as queries read it
+    public static WordNet openOffHeap(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException();
+        }
+        Map<String, Long> phases = newPhases();
+        return new WordNet(timed(phases, "map store", () -> OffHeapStore.open(file)), phases);
+    }
+
+    // helper method that returns the ints of buffer as an array, without a
+    // copy if the buffer wraps a whole array
+    private static int[] toArray(IntBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0
+                && buffer.array().length == buffer.capacity()) {
+            return buffer.array();
+        }
+        int[] values = new int[buffer.capacity()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get(i);
+        }
+        return values;
+    }
+
+    // the set of all WordNet nouns, in sorted order
     public Iterable<String> nouns() {
-        return nounsMap.keySet();
+        return this.state.nouns.nouns();
     }
 
     // is the word a WordNet noun?
@@ -70,29 +306,637 @@ public class WordNet {
         if (word == null) {
             throw new IllegalArgumentException();
         }
-        return this.nounsMap.containsKey(word);
+        return this.state.nouns.id(word) >= 0;
+    }
+
+    // the glosses (third field of synsets.txt) of every synset that contains
+    // the noun, in the same order as the synsets appear in synsets.txt
+    public List<String> glosses(String noun) {
+        State s = this.state;
+        int k = nounId(s, noun);
+        IntBuffer ids = s.nouns.postings(k);
+        List<String> answer = new ArrayList<String>();
+        for (int i = s.nouns.firstPosting(k); i < s.nouns.lastPosting(k); i++) {
+            answer.add(s.glosses.get(ids.get(i)));
+        }
+        return answer;
     }
 
     // a synset (second field of synsets.txt) that is a shortest common ancestor
     // of noun1 and noun2 (defined below)
     public String sca(String noun1, String noun2) {
-        if (!this.isNoun(noun1) || !this.isNoun(noun2)) {
-            throw new IllegalArgumentException();
-        }
-        Stack<Integer> noun1IDs = this.nounsMap.get(noun1);
-        Stack<Integer> noun2IDs = this.nounsMap.get(noun2);
-        int answerID = this.sca.ancestorSubset(noun1IDs, noun2IDs);
-        return this.synsetMap.get(answerID);
+        MetricsListener metrics = this.listener;
+        long start = metrics == null ? 0 : System.nanoTime();
+        State s = this.state;
+        int answerID = PairCache.ancestor(lookup(s, noun1, noun2, metrics));
+        answered(metrics, MetricsListener.Query.SCA, start);
+        return s.synsets.get(answerID);
     }
 
     // distance between noun1 and noun2 (defined below)
     public int distance(String noun1, String noun2) {
-        if (!this.isNoun(noun1) || !this.isNoun(noun2)) {
+        MetricsListener metrics = this.listener;
+        long start = metrics == null ? 0 : System.nanoTime();
+        int answer = PairCache.length(lookup(this.state, noun1, noun2, metrics));
+        answered(metrics, MetricsListener.Query.DISTANCE, start);
+        return answer;
+    }
+
+    // distance(), the id of sca() and sca() itself for noun1 and noun2 from
+    // one search (or cache entry). when withPath is true the answer also
+    // holds the two halves of a shortest ancestral path as synset ids, the
+    // first climbing from a synset of noun1 and the second from a synset of
+    // noun2; that always takes a bfs, bypassing the result cache and the
+    // ancestor label index
+    public AncestralPath ancestralPath(String noun1, String noun2, boolean withPath) {
+        MetricsListener metrics = this.listener;
+        long start = metrics == null ? 0 : System.nanoTime();
+        State s = this.state;
+        AncestralPath answer;
+        if (withPath) {
+            // searched in the same order as lookup(), so that ties between
+            // ancestors are broken the same way sca() breaks them
+            int k1 = nounId(s, noun1);
+            int k2 = nounId(s, noun2);
+            boolean swapped = k1 > k2;
+            if (swapped) {
+                int swap = k1;
+                k1 = k2;
+                k2 = swap;
+            }
+            answer = s.sca.ancestralPath(s.nouns.postings(k1), s.nouns.firstPosting(k1),
+                                         s.nouns.lastPosting(k1), s.nouns.postings(k2),
+                                         s.nouns.firstPosting(k2),
+                                         s.nouns.lastPosting(k2));
+            if (swapped) {
+                answer = answer.reversed();
+            }
+        }
+        else {
+            long result = lookup(s, noun1, noun2, metrics);
+            answer = new AncestralPath(PairCache.length(result),
+                                       PairCache.ancestor(result), null, null, null);
+        }
+        answered(metrics, MetricsListener.Query.ANCESTRAL_PATH, start);
+        return answer.withSynset(s.synsets.get(answer.ancestor()));
+    }
+
+    // the synset (second field of synsets.txt) with the given id, such as a
+    // vertex of an AncestralPath. ids are never reused, so an id from an
+    // earlier answer still names the same synset after later edits
+    public String synset(int id) {
+        TextTable synsets = this.state.synsets;
+        if (id < 0 || id >= synsets.size()) {
             throw new IllegalArgumentException();
         }
-        Stack<Integer> noun1IDs = this.nounsMap.get(noun1);
-        Stack<Integer> noun2IDs = this.nounsMap.get(noun2);
-        return this.sca.lengthSubset(noun1IDs, noun2IDs);
+        return synsets.get(id);
+    }
+
+    // similarity of noun1 and noun2 under measure. the distance and the
+    // shortest common ancestor come from the same single search (or cache
+    // entry) that distance() and sca() use, and depths from an array built
+    // once from the root, so one score costs one search
+    public double similarity(String noun1, String noun2, Similarity measure) {
+        if (measure == null) {
+            throw new IllegalArgumentException();
+        }
+        MetricsListener metrics = this.listener;
+        long start = metrics == null ? 0 : System.nanoTime();
+        State s = this.state;
+        long result = lookup(s, noun1, noun2, metrics);
+        int distance = PairCache.length(result);
+        double answer;
+        switch (measure) {
+            case PATH:
+                answer = 1.0 / (distance + 1);
+                break;
+            case WU_PALMER:
+                int depth = s.sca.depth(PairCache.ancestor(result)) + 1;
+                answer = 2.0 * depth / (distance + 2 * depth);
+                break;
+            default:
+                int deepest = s.sca.maxDepth() + 1;
+                answer = -Math.log((distance + 1) / (2.0 * deepest));
+                break;
+        }
+        answered(metrics, MetricsListener.Query.SIMILARITY, start);
+        return answer;
+    }
+
+    // helper method that reports a finished public query to metrics
+    private static void answered(MetricsListener metrics, MetricsListener.Query query,
+                                 long start) {
+        if (metrics != null) {
+            metrics.query(query, System.nanoTime() - start);
+        }
+    }
+
+    // helper method that returns the noun id of noun, or throws an
+    // IllegalArgumentException if it is not a noun
+    private static int nounId(State s, String noun) {
+        if (noun == null) {
+            throw new IllegalArgumentException();
+        }
+        int k = s.nouns.id(noun);
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        return k;
+    }
+
+    // helper method that returns the packed length and ancestor of two nouns,
+    // from the result cache if it is enabled. the nouns are always searched in
+    // the same order (the one their noun ids give), so (noun1, noun2) and
+    // (noun2, noun1) get the same answer whether or not it was cached. cache
+    // hits and misses are reported to metrics unless it is null
+    private static long lookup(State s, String noun1, String noun2,
+                               MetricsListener metrics) {
+        int k1 = nounId(s, noun1);
+        int k2 = nounId(s, noun2);
+        if (k1 > k2) {
+            int swapId = k1;
+            k1 = k2;
+            k2 = swapId;
+            String swap = noun1;
+            noun1 = noun2;
+            noun2 = swap;
+        }
+        PairCache results = s.cache;
+        if (results != null) {
+            long cached = results.get(noun1, noun2);
+            if (metrics != null) {
+                metrics.cache(cached != PairCache.MISS);
+            }
+            if (cached != PairCache.MISS) {
+                return cached;
+            }
+        }
+        // with a closure cache, a cached noun is merged with a cached noun, or
+        // met by one search from the synsets of an uncached noun
+        ClosureCache cached = s.closures;
+        boolean closure1 = false;
+        boolean closure2 = false;
+        if (k1 != k2 && cached != null && s.sca.indexBytes() == 0) {
+            closure1 = cached.admits(synsetCount(s, k1));
+            closure2 = cached.admits(synsetCount(s, k2));
+        }
+        long answer;
+        if (closure1 && closure2) {
+            answer = s.sca.meet(closure(s, k1), closure(s, k2));
+        }
+        else if (closure1 || closure2) {
+            int other = closure1 ? k2 : k1;
+            answer = s.sca.lengthAndAncestor(closure(s, closure1 ? k1 : k2),
+                                             s.nouns.postings(other),
+                                             s.nouns.firstPosting(other),
+                                             s.nouns.lastPosting(other));
+        }
+        else {
+            answer = s.sca.lengthAndAncestorSubset(
+                    s.nouns.postings(k1), s.nouns.firstPosting(k1), s.nouns.lastPosting(k1),
+                    s.nouns.postings(k2), s.nouns.firstPosting(k2), s.nouns.lastPosting(k2));
+        }
+        if (results != null) {
+            results.put(noun1, noun2, answer);
+        }
+        return answer;
+    }
+
+    // distance() and the id of sca() for noun1 and noun2 packed with
+    // PairCache.pack(), from one search or cache entry; the same for either
+    // argument order
+    long lengthAndAncestor(String noun1, String noun2) {
+        return lookup(this.state, noun1, noun2, this.listener);
+    }
+
+    // distances from noun to each of others, in the order others iterates.
+    // each distinct noun is searched once and the searches are reused across
+    // all pairs, instead of two searches per pair
+    public int[] distances(String noun, Collection<String> others) {
+        State s = this.state;
+        if (noun == null || s.nouns.id(noun) < 0 || others == null) {
+            throw new IllegalArgumentException();
+        }
+        MetricsListener metrics = this.listener;
+        long start = metrics == null ? 0 : System.nanoTime();
+        HashMap<String, long[]> closures = new HashMap<String, long[]>();
+        long[] from = closure(s, noun, closures);
+        int[] answer = new int[others.size()];
+        int k = 0;
+        for (String other : others) {
+            if (other == null || s.nouns.id(other) < 0) {
+                throw new IllegalArgumentException();
+            }
+            answer[k++] = PairCache.length(
+                    s.sca.meet(from, closure(s, other, closures)));
+        }
+        answered(metrics, MetricsListener.Query.DISTANCES, start);
+        return answer;
+    }
+
+    // distances between every pair of nouns: answer[i][j] is the distance
+    // between nouns[i] and nouns[j]. each distinct noun is searched once, and
+    // each unordered pair is met once and mirrored
+    public int[][] distanceMatrix(String[] nouns) {
+        return distanceMatrix(nouns, false);
+    }
+
+    // same as distanceMatrix(nouns), but when parallel is true the searches
+    // and the rows are spread over the fork-join pool the caller runs in (the
+    // common pool, unless called from inside another ForkJoinPool). the
+    // answer does not depend on parallel
+    public int[][] distanceMatrix(String[] nouns, boolean parallel) {
+        if (nouns == null) {
+            throw new IllegalArgumentException();
+        }
+        MetricsListener metrics = this.listener;
+        long start = metrics == null ? 0 : System.nanoTime();
+        State s = this.state;
+        // each distinct noun gets one slot, in order of first appearance
+        HashMap<String, Integer> slots = new HashMap<String, Integer>();
+        ArrayList<String> distinct = new ArrayList<String>();
+        int[] slotOf = new int[nouns.length];
+        for (int i = 0; i < nouns.length; i++) {
+            if (nouns[i] == null || s.nouns.id(nouns[i]) < 0) {
+                throw new IllegalArgumentException();
+            }
+            Integer slot = slots.get(nouns[i]);
+            if (slot == null) {
+                slot = distinct.size();
+                slots.put(nouns[i], slot);
+                distinct.add(nouns[i]);
+            }
+            slotOf[i] = slot;
+        }
+        long[][] closures = new long[distinct.size()][];
+        IntStream searches = IntStream.range(0, closures.length);
+        (parallel ? searches.parallel() : searches).forEach(k -> {
+            closures[k] = closure(s, s.nouns.id(distinct.get(k)));
+        });
+        // row i only writes the cells right of the diagonal and their mirror
+        // images, so rows never write the same cell
+        int[][] answer = new int[nouns.length][nouns.length];
+        IntStream rows = IntStream.range(0, nouns.length);
+        (parallel ? rows.parallel() : rows).forEach(i -> {
+            for (int j = i + 1; j < nouns.length; j++) {
+                int length = PairCache.length(s.sca.meet(closures[slotOf[i]],
+                                                         closures[slotOf[j]]));
+                answer[i][j] = length;
+                answer[j][i] = length;
+            }
+        });
+        answered(metrics, MetricsListener.Query.DISTANCE_MATRIX, start);
+        return answer;
+    }
+
+    // the k nouns with the smallest distance() to noun, nearest first and in
+    // alphabetical order within a distance, leaving out noun itself; fewer
+    // than k if there are not that many other nouns. walks up from the synsets
+    // of noun and back down the hyponyms in order of distance, and stops as
+    // soon as every noun at the distance that completes k has been seen, so it
+    // only touches the neighbourhood of noun instead of every noun
+    public List<String> nearest(String noun, int k) {
+        State s = this.state;
+        int id = nounId(s, noun);
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        if (k == 0) {
+            return new ArrayList<String>();
+        }
+        MetricsListener metrics = this.listener;
+        long start = metrics == null ? 0 : System.nanoTime();
+        Nearest nearest = new Nearest(s.synsets, noun, k);
+        s.sca.walk(s.nouns.postings(id), s.nouns.firstPosting(id),
+                   s.nouns.lastPosting(id), nearest);
+        List<String> answer = nearest.result();
+        answered(metrics, MetricsListener.Query.NEAREST, start);
+        return answer;
+    }
+
+    // collects the nouns of the synsets a nearest() walk reaches, one distance
+    // at a time, and stops the walk once a finished distance brings the count
+    // to k. a noun in several synsets is kept at the first, nearest one
+    private static final class Nearest implements ShortestCommonAncestor.DistanceVisitor {
+        private final TextTable synsets;
+        private final int k;
+        private final HashSet<String> seen = new HashSet<String>();
+        // nouns at finished distances, in answer order
+        private final ArrayList<String> found = new ArrayList<String>();
+        // nouns at the distance being walked
+        private final ArrayList<String> level = new ArrayList<String>();
+        private int distance;
+
+        private Nearest(TextTable synsets, String noun, int k) {
+            this.synsets = synsets;
+            this.k = k;
+            this.seen.add(noun);
+        }
+
+        public boolean visit(int v, int distance) {
+            if (distance != this.distance) {
+                this.finishLevel();
+                if (this.found.size() >= this.k) {
+                    return false;
+                }
+                this.distance = distance;
+            }
+            for (String noun : this.synsets.get(v).split(" ")) {
+                if (this.seen.add(noun)) {
+                    this.level.add(noun);
+                }
+            }
+            return true;
+        }
+
+        // helper method that moves the nouns of the current distance into
+        // found, in alphabetical order
+        private void finishLevel() {
+            Collections.sort(this.level);
+            this.found.addAll(this.level);
+            this.level.clear();
+        }
+
+        private List<String> result() {
+            this.finishLevel();
+            return new ArrayList<String>(
+                    this.found.subList(0, Math.min(this.k, this.found.size())));
+        }
+    }
+
+    // helper method that returns the ancestor closure of noun, searching for
+    // it only the first time a batch asks
+    private static long[] closure(State s, String noun, HashMap<String, long[]> closures) {
+        long[] closure = closures.get(noun);
+        if (closure == null) {
+            closure = closure(s, s.nouns.id(noun));
+            closures.put(noun, closure);
+        }
+        return closure;
+    }
+
+    // helper method that returns the ancestor closure of noun id k, from the
+    // closure cache if the noun is in it, and caches the closure if the cache
+    // admits the noun
+    private static long[] closure(State s, int k) {
+        ClosureCache cached = s.closures;
+        boolean admitted = cached != null && cached.admits(synsetCount(s, k));
+        if (admitted) {
+            long[] closure = cached.get(k);
+            if (closure != null) {
+                return closure;
+            }
+        }
+        long[] closure = s.sca.closure(s.nouns.postings(k), s.nouns.firstPosting(k),
+                                       s.nouns.lastPosting(k));
+        if (admitted) {
+            cached.put(k, closure);
+        }
+        return closure;
+    }
+
+    // helper method that returns the number of synsets noun id k belongs to
+    private static int synsetCount(State s, int k) {
+        return s.nouns.lastPosting(k) - s.nouns.firstPosting(k);
+    }
+
+    // puts a bounded result cache holding up to capacity noun pairs in front
+    // of distance() and sca(), replacing any cache enabled before
+    public synchronized void enableCache(int capacity, PairCache.Policy policy) {
+        this.state = this.state.withCache(new PairCache(capacity, policy));
+    }
+
+    // removes the result cache
+    public synchronized void disableCache() {
+        this.state = this.state.withCache(null);
+    }
+
+    // caches the ancestor closures of up to capacity nouns that belong to at
+    // least minSynsets synsets, replacing any closure cache enabled before.
+    // distance(), sca() and the batch queries on such a noun then merge its
+    // cached closure with the other noun's instead of searching from every
+    // synset of both. has no effect on distance() and sca() while the
+    // ancestor label index is built, since those no longer search. like the
+    // index, merging closures may pick a different one of several equally
+    // short common ancestors than the bfs does
+    public synchronized void enableClosureCache(int capacity, int minSynsets) {
+        this.state = this.state.withClosures(new ClosureCache(capacity, minSynsets));
+    }
+
+    // removes the closure cache
+    public synchronized void disableClosureCache() {
+        this.state = this.state.withClosures(null);
+    }
+
+    // the closure cache with its counters, or null if it is disabled. an edit
+    // replaces it with a copy, which carries the counters over
+    public ClosureCache closureCache() {
+        return this.state.closures;
+    }
+
+    // the result cache with its hit, miss and eviction counters, or null if
+    // caching is disabled. an edit replaces it with a copy, which carries
+    // the counters over
+    public PairCache cache() {
+        return this.state.cache;
+    }
+
+    // a WordNet for one tenant that starts out exactly as this one is now,
+    // sharing its digraph, noun index, synsets, glosses, ancestor labels and
+    // search contexts instead of copying them. the tenant's own addSynset(),
+    // addHypernym() and removeHypernym() keep only its new vertices, edges,
+    // nouns and strings, in small overlays over the shared parts, and check
+    // for cycles and second roots on the tenant's own digraph. a tenant costs
+    // memory in proportion to its edits, not to the taxonomy; past a
+    // sixteenth of the taxonomy its edits are folded into its own copy.
+    // edits to this WordNet after the call are not seen by the tenant, nor
+    // the other way round. the tenant's caches and metrics start off, and it
+    // shares the ancestor labels only if buildIndex() ran here first
+    public synchronized WordNet newTenant() {
+        long start = System.nanoTime();
+        State s = this.state;
+        IntDigraph digraph = s.sca.digraph();
+        OverlayDigraph shared;
+        if (digraph instanceof OverlayDigraph) {
+            shared = (OverlayDigraph) digraph;
+        }
+        else {
+            if (tenantBase == null || tenantBase.base() != digraph) {
+                tenantBase = new OverlayDigraph(digraph);
+            }
+            shared = tenantBase;
+        }
+        ShortestCommonAncestor sca = s.sca.withDigraph(shared, new int[0]);
+        sca.setMetricsListener(null);
+        WordNet tenant = new WordNet(s.synsets, s.glosses, s.nouns, sca, newPhases());
+        tenant.phases.put("create tenant", System.nanoTime() - start);
+        return tenant;
+    }
+
+    // adds a synset made of the nouns in synset, separated by spaces as in
+    // synsets.txt, with the given gloss and hypernym synset ids, and returns
+    // its id, one more than the largest id so far. nothing can reach the new
+    // synset yet, so its edges cannot close a cycle, and only answers that
+    // involve one of its nouns change. queries already running finish on the
+    // version they started with
+    public synchronized int addSynset(String synset, String gloss, int... hypernyms) {
+        if (synset == null || gloss == null || hypernyms == null) {
+            throw new IllegalArgumentException();
+        }
+        String[] words = synset.split(" ", -1);
+        for (String word : words) {
+            if (word.isEmpty()) {
+                throw new IllegalArgumentException("empty noun in synset \"" + synset + "\"");
+            }
+        }
+        long start = System.nanoTime();
+        State s = this.state;
+        int id = s.synsets.size();
+        if (hypernyms.length == 0 && id > 0) {
+            throw DagValidator.rootsException(new int[] { s.sca.root(), id });
+        }
+        OverlayDigraph digraph = overlay(s).withVertex();
+        for (int hypernym : hypernyms) {
+            validateSynset(s, hypernym);
+            if (!digraph.hasEdge(id, hypernym)) {
+                digraph = digraph.withEdge(id, hypernym);
+            }
+        }
+        publish(s, s.synsets.with(synset), s.glosses.with(gloss),
+                s.nouns.withSynset(words, id), digraph, new int[] { id }, "add synset", start);
+        return id;
+    }
+
+    // makes hypernym a hypernym of synset; does nothing if it already is.
+    // the edge closes a cycle exactly when synset is already an ancestor of
+    // hypernym, so the only check is one bfs up from hypernym, which never
+    // leaves hypernym's ancestors, instead of a dfs over the whole digraph.
+    // throws a DagValidator.InvalidDagException naming that cycle
+    public synchronized void addHypernym(int synset, int hypernym) {
+        long start = System.nanoTime();
+        State s = this.state;
+        validateSynset(s, synset);
+        validateSynset(s, hypernym);
+        OverlayDigraph digraph = overlay(s);
+        if (digraph.hasEdge(synset, hypernym)) {
+            return;
+        }
+        int[] path = s.sca.pathUp(hypernym, synset);
+        if (path != null) {
+            int[] cycle = new int[path.length + 1];
+            cycle[0] = synset;
+            System.arraycopy(path, 0, cycle, 1, path.length);
+            throw DagValidator.cycleException(cycle);
+        }
+        publish(s, s.synsets, s.glosses, s.nouns, digraph.withEdge(synset, hypernym),
+                s.sca.descendants(synset), "add hypernym", start);
+    }
+
+    // stops hypernym from being a hypernym of synset. removing an edge never
+    // closes a cycle, but removing the last hypernym of a synset would make
+    // it a second root, so that throws a DagValidator.InvalidDagException
+    public synchronized void removeHypernym(int synset, int hypernym) {
+        long start = System.nanoTime();
+        State s = this.state;
+        validateSynset(s, synset);
+        validateSynset(s, hypernym);
+        OverlayDigraph digraph = overlay(s);
+        if (!digraph.hasEdge(synset, hypernym)) {
+            throw new IllegalArgumentException(
+                    hypernym + " is not a hypernym of " + synset);
+        }
+        if (digraph.outdegree(synset) == 1) {
+            int root = s.sca.root();
+            throw DagValidator.rootsException(new int[] { Math.min(root, synset),
+                                                          Math.max(root, synset) });
+        }
+        publish(s, s.synsets, s.glosses, s.nouns, digraph.withoutEdge(synset, hypernym),
+                s.sca.descendants(synset), "remove hypernym", start);
+    }
+
+    // helper method that throws an IllegalArgumentException unless id is a
+    // synset id of s
+    private static void validateSynset(State s, int id) {
+        if (id < 0 || id >= s.synsets.size()) {
+            throw new IllegalArgumentException(
+                    "synset " + id + " is not between 0 and " + (s.synsets.size() - 1));
+        }
+    }
+
+    // helper method that returns the digraph of s as an overlay to edit
+    private static OverlayDigraph overlay(State s) {
+        IntDigraph digraph = s.sca.digraph();
+        return digraph instanceof OverlayDigraph ? (OverlayDigraph) digraph
+                                                 : new OverlayDigraph(digraph);
+    }
+
+    // helper method that publishes the State after an edit to s. affected
+    // holds every synset whose ancestors changed: their ancestor labels are
+    // recomputed, and every cached pair or closure of a noun in one of them
+    // is dropped, while the rest of both caches is carried over. once the
+    // overlay holds too many edits it is folded into a new CompactDigraph,
+    // which costs one pass over the digraph but keeps traversals from
+    // probing an ever larger table of touched vertices
+    private void publish(State s, TextTable synsets, TextTable glosses, NounIndex nouns,
+                         OverlayDigraph edited, int[] affected, String phase, long start) {
+        IntDigraph digraph = edited;
+        if ((long) edited.edits() * FOLD_FRACTION > edited.base().V()) {
+            digraph = new CompactDigraph(edited);
+        }
+        ShortestCommonAncestor sca = s.sca.withDigraph(digraph, affected);
+        HashSet<String> touched = new HashSet<String>();
+        for (int v : affected) {
+            Collections.addAll(touched, synsets.get(v).split(" "));
+        }
+        Predicate<String> stale = touched::contains;
+        PairCache cache = s.cache == null ? null : s.cache.without(stale);
+        // a new noun can shift the ids of other nouns, so closures move by noun
+        ClosureCache closures = s.closures == null ? null : s.closures.remap(k -> {
+            String noun = s.nouns.noun(k);
+            return stale.test(noun) ? -1 : nouns.id(noun);
+        });
+        this.state = new State(synsets, glosses, nouns, sca, cache, closures);
+        phase(phase, System.nanoTime() - start);
+    }
+
+    // precomputes the ancestor labels of every synset so that distance() and
+    // sca() no longer traverse the digraph; returns the index size in bytes.
+    // edits made afterwards keep the index up to date
+    public synchronized long buildIndex() {
+        long start = System.nanoTime();
+        long bytes = this.state.sca.buildIndex();
+        phase("build index", System.nanoTime() - start);
+        return bytes;
+    }
+
+    // reports every query, search, cache lookup and construction phase to
+    // listener from now on, or stops measuring when listener is null. phases
+    // that already ran are reported to listener right away
+    public synchronized void setMetricsListener(MetricsListener listener) {
+        this.listener = listener;
+        this.state.sca.setMetricsListener(listener);
+        if (listener != null) {
+            for (Map.Entry<String, Long> phase : this.constructionNanos().entrySet()) {
+                listener.phase(phase.getKey(), phase.getValue());
+            }
+        }
+    }
+
+    // how long each phase of building this WordNet took, in nanoseconds, in
+    // the order the phases finished
+    public Map<String, Long> constructionNanos() {
+        synchronized (this.phases) {
+            return new LinkedHashMap<String, Long>(this.phases);
+        }
+    }
+
+    // helper method that records a phase that ran after construction
+    private void phase(String phase, long nanos) {
+        this.phases.put(phase, nanos);
+        MetricsListener metrics = this.listener;
+        if (metrics != null) {
+            metrics.phase(phase, nanos);
+        }
     }
 
     // unit testing (required)
@@ -102,6 +946,29 @@ public class WordNet {
         System.out.println(test.distance("component", "composer"));
         System.out.println(test.isNoun("component"));
         System.out.println(test.sca("component", "composer"));
+        System.out.println(test.glosses("component"));
+        System.out.println("noun index bytes per noun = "
+                                   + test.state.nouns.bytes() / test.state.nouns.size());
+        test.enableCache(1000, PairCache.Policy.LRU);
+        System.out.println(test.distance("composer", "component"));
+        System.out.println(test.sca("component", "composer"));
+        System.out.println(test.cache());
+        QueryMetrics metrics = new QueryMetrics();
+        test.setMetricsListener(metrics);
+        System.out.println(test.distance("component", "composer"));
+        test.distances("component", List.of("composer", "component"));
+        System.out.println(test.nearest("component", 10));
+        System.out.println(test.ancestralPath("component", "composer", true));
+        for (Similarity measure : Similarity.values()) {
+            System.out.println(measure + " = "
+                                       + test.similarity("component", "composer", measure));
+        }
+        System.out.print(metrics);
+        Path snapshot = Paths.get("wordnet.snapshot");
+        test.writeSnapshot(snapshot);
+        WordNet loaded = WordNet.fromSnapshot(snapshot);
+        System.out.println(loaded.distance("component", "composer"));
+        System.out.println(loaded.sca("component", "composer"));
     }
 
 }
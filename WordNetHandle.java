@@ -0,0 +1,337 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// holds the current version of a WordNet and replaces it with a new release
+// without stopping the readers. each published WordNet becomes a Version
+// with the next epoch number. a reader pins the current version with
+// acquire() (or runs one query on it with read()) and answers the whole
+// request from it, so a request never straddles two releases. reload()
+// builds the next release on a background thread, one at a time, and swaps
+// it in with one atomic write; readers that pinned the old version finish
+// on it, and once the last of them lets go the old version drops its
+// WordNet, so at most the current release, the one being built and any old
+// release still pinned are ever in memory at once
+public class WordNetHandle implements AutoCloseable {
+
+    // the version new readers pin
+    private final AtomicReference<Version> current;
+
+    // builds new releases, one at a time
+    private final ExecutorService builder;
+
+    // optional metrics listener for build and swap phases, null when off
+    private volatile MetricsListener listener;
+
+    // how long the last reload() build and swap took, and how long its old
+    // version took to drain, in nanoseconds; -1 until known
+    private volatile long buildNanos = -1;
+    private volatile long swapNanos = -1;
+    private volatile long drainNanos = -1;
+
+    // number of versions whose WordNet is still held
+    private final AtomicInteger live = new AtomicInteger();
+
+    // constructor takes the first version to serve
+    public WordNetHandle(WordNet wordnet) {
+        if (wordnet == null) {
+            throw new IllegalArgumentException();
+        }
+        this.current = new AtomicReference<Version>(new Version(this, wordnet, 1));
+        this.builder = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "wordnet-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // one published WordNet, held until it is replaced and every reader that
+    // pinned it has let go
+    public static final class Version {
+        private final WordNetHandle handle;
+        private final long epoch;
+
+        // the release, null once the version has drained
+        private volatile WordNet wordnet;
+
+        // readers holding a pin, and whether a newer version replaced this one
+        private final AtomicInteger readers = new AtomicInteger();
+        private volatile boolean retired;
+        private volatile long retiredAt;
+
+        // completes once the version is retired and no reader pins it
+        private final CompletableFuture<Void> drained = new CompletableFuture<Void>();
+
+        private Version(WordNetHandle handle, WordNet wordnet, long epoch) {
+            this.handle = handle;
+            this.wordnet = wordnet;
+            this.epoch = epoch;
+            handle.live.incrementAndGet();
+        }
+
+        // 1 for the first version, one more for every version after it
+        public long epoch() {
+            return epoch;
+        }
+
+        // true once a newer version has been published
+        public boolean isRetired() {
+            return retired;
+        }
+
+        // completes once this version has been replaced and drained
+        public CompletableFuture<Void> drained() {
+            return drained;
+        }
+
+        // helper method that marks this version replaced and drains it if no
+        // reader holds it
+        private void retire() {
+            retiredAt = System.nanoTime();
+            retired = true;
+            if (readers.get() == 0) {
+                drain();
+            }
+        }
+
+        // helper method that lets go of one pin
+        private void unpin() {
+            if (readers.decrementAndGet() == 0 && retired) {
+                drain();
+            }
+        }
+
+        // helper method that drops the WordNet once, so it can be reclaimed
+        private void drain() {
+            if (drained.complete(null)) {
+                wordnet = null;
+                handle.live.decrementAndGet();
+                handle.drained(System.nanoTime() - retiredAt);
+            }
+        }
+
+        public String toString() {
+            return "version " + epoch + (retired ? " (retired, " + readers.get()
+                    + " readers)" : " (current, " + readers.get() + " readers)");
+        }
+    }
+
+    // one reader's pin on a version: the WordNet it answers from stays the
+    // same until close(), whatever is published meanwhile. each request
+    // takes its own
+    public static final class Pin implements AutoCloseable {
+        private final Version version;
+        private final WordNet wordnet;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Pin(Version version, WordNet wordnet) {
+            this.version = version;
+            this.wordnet = wordnet;
+        }
+
+        // the pinned WordNet
+        public WordNet wordnet() {
+            if (closed.get()) {
+                throw new IllegalStateException("pin is closed");
+            }
+            return wordnet;
+        }
+
+        // epoch of the pinned version
+        public long epoch() {
+            return version.epoch;
+        }
+
+        // lets go of the version; later calls do nothing
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                version.unpin();
+            }
+        }
+    }
+
+    // pins the current version. the caller must close() the pin, best with
+    // try-with-resources, or the version it pins is never reclaimed
+    public Pin acquire() {
+        while (true) {
+            Version version = current.get();
+            version.readers.incrementAndGet();
+            // a swap between reading current and counting the reader may
+            // have retired the version already; then try the new one
+            WordNet wordnet = version.wordnet;
+            if (current.get() == version && wordnet != null) {
+                return new Pin(version, wordnet);
+            }
+            version.unpin();
+        }
+    }
+
+    // runs query against one pinned version and returns its answer
+    public <T> T read(Function<WordNet, T> query) {
+        if (query == null) {
+            throw new IllegalArgumentException();
+        }
+        try (Pin pin = acquire()) {
+            return query.apply(pin.wordnet);
+        }
+    }
+
+    // the version new readers pin right now
+    public Version current() {
+        return current.get();
+    }
+
+    // builds a new release from the two input files on a background thread
+    // with WordNet.loadParallel() and publishes it when it is ready
+    public CompletableFuture<Version> reload(String synsets, String hypernyms) {
+        if (synsets == null || hypernyms == null) {
+            throw new IllegalArgumentException();
+        }
+        return reload(() -> WordNet.loadParallel(synsets, hypernyms));
+    }
+
+    // builds a new release with build on a background thread, after any
+    // reload already queued, and publishes it when it is ready. build may
+    // also build the index or enable caches, so the release is ready to
+    // serve at full speed before any reader sees it. completes with the new
+    // version, or exceptionally if build throws, in which case the current
+    // version stays
+    public CompletableFuture<Version> reload(Supplier<WordNet> build) {
+        if (build == null) {
+            throw new IllegalArgumentException();
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            WordNet next = build.get();
+            long nanos = System.nanoTime() - start;
+            buildNanos = nanos;
+            phase("build version", nanos);
+            return publish(next);
+        }, builder);
+    }
+
+    // publishes next as the current version right away, and returns it
+    public synchronized Version publish(WordNet next) {
+        if (next == null) {
+            throw new IllegalArgumentException();
+        }
+        long start = System.nanoTime();
+        Version version = new Version(this, next, current.get().epoch + 1);
+        Version old = current.getAndSet(version);
+        long nanos = System.nanoTime() - start;
+        swapNanos = nanos;
+        phase("swap version", nanos);
+        old.retire();
+        return version;
+    }
+
+    // helper method that records how long a retired version took to drain
+    private void drained(long nanos) {
+        drainNanos = nanos;
+        phase("drain version", nanos);
+    }
+
+    // helper method that reports a phase to the listener, if any
+    private void phase(String phase, long nanos) {
+        MetricsListener metrics = this.listener;
+        if (metrics != null) {
+            metrics.phase(phase, nanos);
+        }
+    }
+
+    // reports the build, swap and drain of every version from now on to
+    // listener as phases, or stops when listener is null
+    public void setMetricsListener(MetricsListener listener) {
+        this.listener = listener;
+    }
+
+    // nanoseconds the last reload() spent building, or -1
+    public long buildNanos() {
+        return buildNanos;
+    }
+
+    // nanoseconds the last publication took to swap versions, or -1
+    public long swapNanos() {
+        return swapNanos;
+    }
+
+    // nanoseconds from the last retirement of a version until its last
+    // reader let go, or -1
+    public long drainNanos() {
+        return drainNanos;
+    }
+
+    // number of versions whose WordNet is still held, the current one
+    // included
+    public int liveVersions() {
+        return live.get();
+    }
+
+    // stops the background builder; builds already queued still run
+    public void close() {
+        builder.shutdown();
+    }
+
+    public String toString() {
+        return "WordNetHandle: " + current.get() + ", " + liveVersions()
+                + " live versions, last build " + buildNanos / 1000000 + " ms, swap "
+                + swapNanos + " ns, drain " + drainNanos / 1000 + " us";
+    }
+
+    // test client: java WordNetHandle synsets.txt hypernyms.txt
+    // keeps two threads querying while the same release is reloaded three
+    // times, and checks that every request saw one version throughout
+    public static void main(String[] args) throws Exception {
+        try (WordNetHandle handle = new WordNetHandle(WordNet.loadParallel(args[0], args[1]))) {
+            String[] nouns = handle.read(wordnet -> {
+                List<String> all = new ArrayList<String>();
+                for (String noun : wordnet.nouns()) {
+                    all.add(noun);
+                }
+                return all.toArray(new String[0]);
+            });
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger straddled = new AtomicInteger();
+            AtomicInteger requests = new AtomicInteger();
+            Thread[] readers = new Thread[2];
+            for (int t = 0; t < readers.length; t++) {
+                long seed = t;
+                readers[t] = new Thread(() -> {
+                    Random random = new Random(seed);
+                    while (!done.get()) {
+                        try (Pin pin = handle.acquire()) {
+                            WordNet wordnet = pin.wordnet();
+                            for (int i = 0; i < 10; i++) {
+                                wordnet.distance(nouns[random.nextInt(nouns.length)],
+                                                 nouns[random.nextInt(nouns.length)]);
+                            }
+                            if (pin.wordnet() != wordnet) {
+                                straddled.incrementAndGet();
+                            }
+                        }
+                        requests.incrementAndGet();
+                    }
+                });
+                readers[t].start();
+            }
+            for (int i = 0; i < 3; i++) {
+                Version version = handle.reload(args[0], args[1]).join();
+                System.out.println("published " + version + ": " + handle);
+            }
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            System.out.println(requests.get() + " requests, " + straddled.get()
+                                       + " straddled versions, " + handle);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// streaming parser for synsets.txt and hypernyms.txt. each file is memory
+// mapped and tokenized byte by byte: ids are parsed straight from the digits,
+// and the only Strings created are the ones that are kept (one per synset, one
+// per gloss and one per noun occurrence). no line Strings or split() arrays
+class WordNetParser {
+
+    // everything in synsets.txt, indexed by synset id
+    static final class Synsets {
+        // number of synsets, which is also the number of vertices
+        final int count;
+        // synsets[id] = second field of the line for id
+        final String[] synsets;
+        // glosses[id] = third field of the line for id
+        final String[] glosses;
+        // every (noun, synset id) occurrence in file order: nouns[k] is a
+        // member of synset nounIds[k]
+        final String[] nouns;
+        final int[] nounIds;
+
+        private Synsets(int count, String[] synsets, String[] glosses,
+                        String[] nouns, int[] nounIds) {
+            this.count = count;
+            this.synsets = synsets;
+            this.glosses = glosses;
+            this.nouns = nouns;
+            this.nounIds = nounIds;
+        }
+    }
+
+    private WordNetParser() { }
+
+    // parses a synsets file: one "id,noun noun ...,gloss" line per synset,
+    // with ids 0 through count - 1. commas inside the gloss are kept
+    static Synsets parseSynsets(String file) {
+        MappedByteBuffer buffer = map(file);
+        int limit = buffer.limit();
+        int count = countLines(buffer);
+        String[] synsets = new String[count];
+        String[] glosses = new String[count];
+        String[] nouns = new String[count];
+        int[] nounIds = new int[count];
+        int numOfNouns = 0;
+        int pos = 0;
+        int line = 0;
+        while (pos < limit) {
+            int end = endOfLine(buffer, pos);
+            if (end == pos) {
+                pos = skipLineBreak(buffer, pos);
+                continue;
+            }
+            line += 1;
+            int comma = indexOf(buffer, pos, end, (byte) ',');
+            int id = parseInt(buffer, pos, comma, file, line);
+            if (id >= count || synsets[id] != null) {
+                throw new IllegalArgumentException(
+                        file + ":" + line + ": bad or repeated synset id " + id);
+            }
+            if (comma >= end) {
+                throw new IllegalArgumentException(file + ":" + line + ": missing synset field");
+            }
+            int nounsStart = comma + 1;
+            int nounsEnd = indexOf(buffer, nounsStart, end, (byte) ',');
+            synsets[id] = decode(buffer, nounsStart, nounsEnd);
+            glosses[id] = nounsEnd < end ? decode(buffer, nounsEnd + 1, end) : "";
+            // nouns are separated by single spaces
+            int start = nounsStart;
+            while (start < nounsEnd) {
+                int space = indexOf(buffer, start, nounsEnd, (byte) ' ');
+                if (space > start) {
+                    if (numOfNouns == nouns.length) {
+                        nouns = Arrays.copyOf(nouns, 2 * numOfNouns);
+                        nounIds = Arrays.copyOf(nounIds, 2 * numOfNouns);
+                    }
+                    nouns[numOfNouns] = decode(buffer, start, space);
+                    nounIds[numOfNouns] = id;
+                    numOfNouns += 1;
+                }
+                start = space + 1;
+            }
+            pos = skipLineBreak(buffer, end);
+        }
+        return new Synsets(count, synsets, glosses,
+                           Arrays.copyOf(nouns, numOfNouns),
+                           Arrays.copyOf(nounIds, numOfNouns));
+    }
+
+    // every edge in hypernyms.txt, in file order: tails[e] -> heads[e]
+    static final class Edges {
+        final int[] tails;
+        final int[] heads;
+        final int count;
+
+        private Edges(int[] tails, int[] heads, int count) {
+            this.tails = tails;
+            this.heads = heads;
+            this.count = count;
+        }
+
+        // the edges as a compact digraph on numOfVertices vertices
+        CompactDigraph toCompact(int numOfVertices) {
+            return WordNetParser.toCompact(tails, heads, count, numOfVertices);
+        }
+    }
+
+    // parses a hypernyms file, one "id,hypernym,hypernym,..." line per synset,
+    // straight into a compact digraph on numOfVertices vertices. as in
+    // Digraph, an edge listed twice is only stored once; edges keep the order
+    // they appear in the file
+    static CompactDigraph parseHypernyms(String file, int numOfVertices) {
+        return parseHypernymEdges(file, numOfVertices).toCompact(numOfVertices);
+    }
+
+    // parses a hypernyms file into a list of edges. if numOfVertices is
+    // negative the number of synsets is not known yet, and the vertex range
+    // is only checked once the edges are turned into a digraph
+    static Edges parseHypernymEdges(String file, int numOfVertices) {
+        MappedByteBuffer buffer = map(file);
+        int limit = buffer.limit();
+        int[] tails = new int[Math.max(16, numOfVertices)];
+        int[] heads = new int[tails.length];
+        int numOfEdges = 0;
+        int pos = 0;
+        int line = 0;
+        while (pos < limit) {
+            int end = endOfLine(buffer, pos);
+            if (end == pos) {
+                pos = skipLineBreak(buffer, pos);
+                continue;
+            }
+            line += 1;
+            // trailing commas end the line without another hypernym, as
+            // with split(",")
+            int last = end;
+            while (last > pos && buffer.get(last - 1) == ',') {
+                last -= 1;
+            }
+            int comma = indexOf(buffer, pos, last, (byte) ',');
+            int v = vertex(parseInt(buffer, pos, comma, file, line),
+                           numOfVertices, file, line);
+            while (comma < last) {
+                int start = comma + 1;
+                comma = indexOf(buffer, start, last, (byte) ',');
+                int w = vertex(parseInt(buffer, start, comma, file, line),
+                               numOfVertices, file, line);
+                if (numOfEdges == tails.length) {
+                    tails = Arrays.copyOf(tails, 2 * numOfEdges);
+                    heads = Arrays.copyOf(heads, 2 * numOfEdges);
+                }
+                tails[numOfEdges] = v;
+                heads[numOfEdges] = w;
+                numOfEdges += 1;
+            }
+            pos = skipLineBreak(buffer, end);
+        }
+        return new Edges(tails, heads, numOfEdges);
+    }
+
+    // groups the edges by tail with a counting sort and drops repeated edges
+    static CompactDigraph toCompact(int[] tails, int[] heads, int numOfEdges,
+                                    int numOfVertices) {
+        int[] offsets = new int[numOfVertices + 1];
+        for (int e = 0; e < numOfEdges; e++) {
+            vertex(tails[e], numOfVertices);
+            vertex(heads[e], numOfVertices);
+            offsets[tails[e] + 1]++;
+        }
+        for (int v = 0; v < numOfVertices; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] grouped = new int[numOfEdges];
+        int[] next = Arrays.copyOf(offsets, numOfVertices);
+        for (int e = 0; e < numOfEdges; e++) {
+            grouped[next[tails[e]]++] = heads[e];
+        }
+        // seen[w] == v + 1 while compacting v's edges if v -> w is kept
+        int[] seen = new int[numOfVertices];
+        int[] compactOffsets = new int[numOfVertices + 1];
+        int kept = 0;
+        for (int v = 0; v < numOfVertices; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int w = grouped[e];
+                if (seen[w] != v + 1) {
+                    seen[w] = v + 1;
+                    grouped[kept++] = w;
+                }
+            }
+            compactOffsets[v + 1] = kept;
+        }
+        return new CompactDigraph(compactOffsets, Arrays.copyOf(grouped, kept));
+    }
+
+    // helper method that maps the whole file read-only
+    private static MappedByteBuffer map(String file) {
+        if (file == null) {
+            throw new IllegalArgumentException("argument is null");
+        }
+        Path path = Paths.get(file);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + " is too large to map");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not open " + file, e);
+        }
+    }
+
+    // helper method that counts the non-empty lines
+    private static int countLines(MappedByteBuffer buffer) {
+        int lines = 0;
+        boolean empty = true;
+        for (int i = 0; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                if (!empty) {
+                    lines += 1;
+                }
+                empty = true;
+            }
+            else if (b != '\r') {
+                empty = false;
+            }
+        }
+        return empty ? lines : lines + 1;
+    }
+
+    // helper method that returns the index of the line break (or the end of
+    // the file) at or after pos, not counting a '\r' before the '\n'
+    private static int endOfLine(MappedByteBuffer buffer, int pos) {
+        int end = indexOf(buffer, pos, buffer.limit(), (byte) '\n');
+        if (end > pos && buffer.get(end - 1) == '\r') {
+            end -= 1;
+        }
+        return end;
+    }
+
+    // helper method that returns the index just past the line break at pos
+    private static int skipLineBreak(MappedByteBuffer buffer, int pos) {
+        if (pos < buffer.limit() && buffer.get(pos) == '\r') {
+            pos += 1;
+        }
+        return pos + 1;
+    }
+
+    // helper method that returns the index of b in [from, to), or to if absent
+    private static int indexOf(MappedByteBuffer buffer, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    // helper method that parses the non-negative int in [from, to)
+    private static int parseInt(MappedByteBuffer buffer, int from, int to,
+                                String file, int line) {
+        if (from == to) {
+            throw new IllegalArgumentException(file + ":" + line + ": missing id");
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException(file + ":" + line + ": bad id");
+            }
+            value = 10 * value + digit;
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + ":" + line + ": id too large");
+            }
+        }
+        return (int) value;
+    }
+
+    // helper method that checks 0 <= v < numOfVertices, unless numOfVertices
+    // is negative
+    private static int vertex(int v, int numOfVertices, String file, int line) {
+        if (numOfVertices >= 0 && v >= numOfVertices) {
+            throw new IllegalArgumentException(
+                    file + ":" + line + ": vertex " + v + " is not between 0 and "
+                            + (numOfVertices - 1));
+        }
+        return v;
+    }
+
+    // helper method that checks 0 <= v < numOfVertices
+    private static void vertex(int v, int numOfVertices) {
+        if (v < 0 || v >= numOfVertices) {
+            throw new IllegalArgumentException(
+                    "vertex " + v + " is not between 0 and " + (numOfVertices - 1));
+        }
+    }
+
+    // helper method that decodes the UTF-8 bytes in [from, to)
+    private static String decode(MappedByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
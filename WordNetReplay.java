@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+// stand-in for a request/response service: replays a query log against a
+// WordNetService as fast as back-pressure lets it, then reports throughput,
+// the latency of each request from submission to answer, and how many
+// requests were coalesced. each line of the log is one request:
+//
+//   distance noun1 noun2
+//   sca noun1 noun2
+//   outcast noun1 noun2 ... nounN
+//
+// without a log it replays a synthetic one in which a few hot pairs make up
+// most of the traffic, the way popular queries do in a live service
+public class WordNetReplay {
+
+    private final WordNetService service;
+
+    // constructor takes the service to replay against
+    public WordNetReplay(WordNetService service) {
+        this.service = service;
+    }
+
+    // submits every request of log in order, waits for all of them to finish,
+    // prints a report and returns the latency histogram in nanoseconds
+    public Histogram replay(List<String[]> log) {
+        Histogram latency = new Histogram();
+        long coalescedBefore = service.coalesced();
+        List<CompletableFuture<?>> answers = new ArrayList<CompletableFuture<?>>();
+        long start = System.nanoTime();
+        for (String[] request : log) {
+            long submitted = System.nanoTime();
+            CompletableFuture<?> answer;
+            try {
+                answer = submit(request);
+            }
+            catch (IllegalArgumentException e) {
+                // a request the service turned down, such as an unknown noun
+                answer = CompletableFuture.failedFuture(e);
+            }
+            answers.add(answer.whenComplete(
+                    (result, e) -> latency.record(System.nanoTime() - submitted)));
+        }
+        int failed = 0;
+        for (CompletableFuture<?> answer : answers) {
+            try {
+                answer.join();
+            }
+            catch (RuntimeException e) {
+                failed += 1;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%d requests in %d ms, %.0f requests/s, %d coalesced, "
+                                  + "%d failed%n", log.size(), nanos / 1000000,
+                          log.size() * 1e9 / nanos,
+                          service.coalesced() - coalescedBefore, failed);
+        System.out.println("latency ns: " + latency);
+        return latency;
+    }
+
+    // helper method that sends one log line to the service
+    private CompletableFuture<?> submit(String[] request) {
+        switch (request[0]) {
+            case "distance":
+                return service.distance(request[1], request[2]);
+            case "sca":
+                return service.sca(request[1], request[2]);
+            case "outcast":
+                String[] nouns = new String[request.length - 1];
+                System.arraycopy(request, 1, nouns, 0, nouns.length);
+                return service.outcast(nouns);
+            default:
+                throw new IllegalArgumentException("unknown request " + request[0]);
+        }
+    }
+
+    // reads a query log, one request per line, skipping blank lines
+    public static List<String[]> read(String file) throws IOException {
+        List<String[]> log = new ArrayList<String[]>();
+        for (String line : Files.readAllLines(Paths.get(file))) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                log.add(line.split("\\s+"));
+            }
+        }
+        return log;
+    }
+
+    // a synthetic log of count requests: nine in ten are distance or sca
+    // requests, half of those for one of 64 hot pairs, and the rest outcast
+    // requests of 8 nouns
+    public static List<String[]> synthetic(WordNet wordnet, int count, long seed) {
+        List<String> nouns = new ArrayList<String>();
+        for (String noun : wordnet.nouns()) {
+            nouns.add(noun);
+        }
+        Random random = new Random(seed);
+        String[][] hot = new String[64][];
+        for (int i = 0; i < hot.length; i++) {
+            hot[i] = new String[] { nouns.get(random.nextInt(nouns.size())),
+                                    nouns.get(random.nextInt(nouns.size())) };
+        }
+        List<String[]> log = new ArrayList<String[]>();
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(10) == 0) {
+                String[] request = new String[9];
+                request[0] = "outcast";
+                for (int k = 1; k < request.length; k++) {
+                    request[k] = nouns.get(random.nextInt(nouns.size()));
+                }
+                log.add(request);
+                continue;
+            }
+            String[] pair = random.nextBoolean()
+                            ? hot[random.nextInt(hot.length)]
+                            : new String[] { nouns.get(random.nextInt(nouns.size())),
+                                             nouns.get(random.nextInt(nouns.size())) };
+            log.add(new String[] { random.nextBoolean() ? "distance" : "sca",
+                                   pair[0], pair[1] });
+        }
+        return log;
+    }
+
+    // test client: java WordNetReplay synsets.txt hypernyms.txt log [maxPending]
+    // replays the log file; with a number instead of a log file, replays a
+    // synthetic log of that many requests. the log is replayed twice and only
+    // the second run counts, so it runs compiled code
+    public static void main(String[] args) throws IOException {
+        WordNet wordnet = new WordNet(args[0], args[1]);
+        List<String[]> log = args.length < 3 ? synthetic(wordnet, 100000, 42)
+                             : args[2].matches("\\d+")
+                               ? synthetic(wordnet, Integer.parseInt(args[2]), 42)
+                               : read(args[2]);
+        int maxPending = args.length > 3 ? Integer.parseInt(args[3])
+                                         : WordNetService.DEFAULT_MAX_PENDING;
+        try (WordNetService service = new WordNetService(wordnet, null, maxPending)) {
+            WordNetReplay replay = new WordNetReplay(service);
+            replay.replay(log);
+            replay.replay(log);
+            System.out.println(service);
+        }
+    }
+}
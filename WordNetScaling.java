@@ -0,0 +1,261 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// scaling harness: generates synthetic taxonomies of growing size with
+// TaxonomyGenerator and, for each one, records how long every loader takes,
+// how much heap the loaded structures retain, and the latency percentiles of
+// every query path (the plain bfs, the result cache, the ancestor label index
+// and Outcast). each phase runs on its own, so a phase that runs out of stack
+// or heap at some size is reported as failed and the rest still run. heap is
+// measured as the used heap after a few System.gc() calls, so it is an
+// estimate; run with a fixed -Xmx and a non-concurrent collector
+// (-XX:+UseSerialGC) for stable numbers
+public class WordNetScaling {
+
+    // latency percentiles reported for every query path
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final double branching;
+    private final int maxDepth;
+    private final double multiParent;
+    private final int queries;
+    private final long seed;
+
+    // constructor takes the shape of the taxonomies (see TaxonomyGenerator),
+    // the number of queries to time per query path and the random seed
+    public WordNetScaling(double branching, int maxDepth, double multiParent,
+                          int queries, long seed) {
+        if (queries < 1) {
+            throw new IllegalArgumentException("queries must be positive");
+        }
+        this.branching = branching;
+        this.maxDepth = maxDepth;
+        this.multiParent = multiParent;
+        this.queries = queries;
+        this.seed = seed;
+    }
+
+    // generates a taxonomy with V synsets in a temporary directory, measures
+    // it and prints one report, then deletes the files
+    public void run(int V) throws Exception {
+        Path dir = Files.createTempDirectory("wordnet-scaling");
+        Path synsets = dir.resolve("synsets.txt");
+        Path hypernyms = dir.resolve("hypernyms.txt");
+        Path snapshot = dir.resolve("wordnet.snapshot");
+        try {
+            System.out.println("V = " + V + ", branching = " + branching
+                                       + ", maxDepth = " + maxDepth
+                                       + ", multiParent = " + multiParent);
+            long start = System.nanoTime();
+            new TaxonomyGenerator(V, branching, maxDepth, multiParent, seed)
+                    .write(synsets, hypernyms);
+            report("generate", start, 0);
+            String s = synsets.toString();
+            String h = hypernyms.toString();
+            digraphs(V, h);
+            WordNet wordnet = loaders(s, h, snapshot);
+            if (wordnet != null) {
+                queries(wordnet);
+            }
+        }
+        finally {
+            Files.deleteIfExists(synsets);
+            Files.deleteIfExists(hypernyms);
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(dir);
+        }
+        System.out.println();
+    }
+
+    // helper method that times building the HashSet-based Digraph and the
+    // compact digraph, and checking them with ShortestCommonAncestor
+    private void digraphs(int V, String hypernyms) {
+        try {
+            WordNetParser.Edges edges = WordNetParser.parseHypernymEdges(hypernyms, V);
+            long before = usedHeap();
+            long start = System.nanoTime();
+            Digraph digraph = new Digraph(V);
+            for (int e = 0; e < edges.count; e++) {
+                digraph.addEdge(edges.tails[e], edges.heads[e]);
+            }
+            report("Digraph (HashSet)", start, usedHeap() - before);
+            start = System.nanoTime();
+            new ShortestCommonAncestor(digraph);
+            report("ShortestCommonAncestor(Digraph)", start, 0);
+            start = System.nanoTime();
+            CompactDigraph compact = edges.toCompact(V);
+            report("CompactDigraph", start, compact.bytes());
+            start = System.nanoTime();
+            DagValidator.validate(compact);
+            report("DagValidator.validate", start, 0);
+            start = System.nanoTime();
+            DagValidator.parallelRoot(compact);
+            report("DagValidator.parallelRoot", start, 0);
+        }
+        catch (Throwable e) {
+            failed("digraphs", e);
+        }
+    }
+
+    // helper method that times every WordNet loader and returns the WordNet
+    // loaded from the text files, or null if it could not be loaded
+    private WordNet loaders(String synsets, String hypernyms, Path snapshot) {
+        WordNet wordnet = null;
+        try {
+            long before = usedHeap();
+            long start = System.nanoTime();
+            wordnet = new WordNet(synsets, hypernyms);
+            report("new WordNet", start, usedHeap() - before);
+        }
+        catch (Throwable e) {
+            failed("new WordNet", e);
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            WordNet.loadParallel(synsets, hypernyms);
+            report("WordNet.loadParallel", start, 0);
+            start = System.nanoTime();
+            wordnet.writeSnapshot(snapshot);
+            report("writeSnapshot", start, 0);
+            start = System.nanoTime();
+            WordNet.fromSnapshot(snapshot);
+            report("WordNet.fromSnapshot", start, 0);
+        }
+        catch (Throwable e) {
+            failed("loaders", e);
+        }
+        return wordnet;
+    }
+
+    // helper method that times queries on random noun pairs along every
+    // query path
+    private void queries(WordNet wordnet) {
+        List<String> nouns = new ArrayList<String>();
+        for (String noun : wordnet.nouns()) {
+            nouns.add(noun);
+        }
+        Random random = new Random(seed);
+        String[] first = new String[queries];
+        String[] second = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            first[i] = nouns.get(random.nextInt(nouns.size()));
+            second[i] = nouns.get(random.nextInt(nouns.size()));
+        }
+        try {
+            // one untimed pass, so the timed ones run compiled code
+            distances(wordnet, first, second);
+            percentiles("distance (bfs)", distances(wordnet, first, second));
+            wordnet.enableCache(queries, PairCache.Policy.LRU);
+            distances(wordnet, first, second);
+            percentiles("distance (cached)", distances(wordnet, first, second));
+            wordnet.disableCache();
+            long start = System.nanoTime();
+            long bytes = wordnet.buildIndex();
+            report("buildIndex", start, bytes);
+            distances(wordnet, first, second);
+            percentiles("distance (indexed)", distances(wordnet, first, second));
+            Outcast outcast = new Outcast(wordnet);
+            String[][] groups = new String[Math.max(1, queries / 100)][50];
+            for (String[] group : groups) {
+                for (int i = 0; i < group.length; i++) {
+                    group[i] = nouns.get(random.nextInt(nouns.size()));
+                }
+            }
+            long[] nanos = new long[groups.length];
+            for (int g = 0; g < groups.length; g++) {
+                long begin = System.nanoTime();
+                outcast.outcast(groups[g]);
+                nanos[g] = System.nanoTime() - begin;
+            }
+            percentiles("outcast (50 nouns, indexed)", nanos);
+        }
+        catch (Throwable e) {
+            failed("queries", e);
+        }
+    }
+
+    // helper method that times distance() on every pair, one at a time
+    private static long[] distances(WordNet wordnet, String[] first, String[] second) {
+        long[] nanos = new long[first.length];
+        for (int i = 0; i < first.length; i++) {
+            long start = System.nanoTime();
+            wordnet.distance(first[i], second[i]);
+            nanos[i] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+    // helper method that prints the time since start and, if it is not 0, a
+    // number of bytes
+    private static void report(String phase, long start, long bytes) {
+        long millis = (System.nanoTime() - start) / 1000000;
+        String line = String.format("  %-34s %8d ms", phase, millis);
+        if (bytes != 0) {
+            line += String.format("  %10.1f MB", bytes / 1048576.0);
+        }
+        System.out.println(line);
+    }
+
+    // helper method that prints the latency percentiles of nanos in us
+    private static void percentiles(String path, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        StringBuilder line = new StringBuilder(String.format("  %-34s", path));
+        for (double p : PERCENTILES) {
+            int k = Math.min(sorted.length - 1,
+                             Math.max(0, (int) Math.ceil(p * sorted.length) - 1));
+            line.append(String.format("  p%s %8.1f", format(p), sorted[k] / 1000.0));
+        }
+        line.append(String.format("  max %8.1f us",
+                                  sorted[sorted.length - 1] / 1000.0));
+        System.out.println(line);
+    }
+
+    // helper method that formats 0.999 as 99.9 and 0.5 as 50
+    private static String format(double p) {
+        String s = Double.toString(100 * p);
+        return s.endsWith(".0") ? s.substring(0, s.length() - 2) : s;
+    }
+
+    // helper method that reports a phase that threw, such as a
+    // StackOverflowError or an OutOfMemoryError
+    private static void failed(String phase, Throwable e) {
+        System.out.println("  " + phase + " FAILED: " + e);
+    }
+
+    // helper method that returns the used heap after collecting garbage
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // test client: java WordNetScaling branching maxDepth multiParent queries
+    // V... (for example 4 20 0.2 10000 10000 100000 1000000). with no
+    // arguments, runs WordNet-like shapes from 10^4 to 10^6 synsets
+    public static void main(String[] args) throws Exception {
+        double branching = args.length > 0 ? Double.parseDouble(args[0]) : 4;
+        int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        double multiParent = args.length > 2 ? Double.parseDouble(args[2]) : 0.02;
+        int queries = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+        int[] sizes = { 10000, 100000, 1000000 };
+        if (args.length > 4) {
+            sizes = new int[args.length - 4];
+            for (int i = 4; i < args.length; i++) {
+                sizes[i - 4] = Integer.parseInt(args[i]);
+            }
+        }
+        WordNetScaling scaling = new WordNetScaling(branching, maxDepth, multiParent,
+                                                    queries, 42);
+        for (int V : sizes) {
+            scaling.run(V);
+        }
+    }
+}
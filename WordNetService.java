@@ -0,0 +1,370 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// asynchronous front end for a shared WordNet: distance(), sca() and
+// outcast() requests return CompletableFutures and run on an executor,
+// virtual threads by default. requests for the same unordered noun pair that
+// arrive while one is already running are coalesced onto it, and distance()
+// and sca() share the one packed search, so a burst of duplicate pairs costs
+// one search. at most maxPending requests are in flight at once; a caller
+// that submits past that blocks until one finishes, so a fast producer is
+// slowed down to the speed of the engine instead of queueing without bound.
+// the methods return futures but still block the calling thread while they
+// wait for a slot: as long as it takes by default, or up to a timeout given
+// to the constructor, after which the request fails with a
+// RejectedExecutionException
+public class WordNetService implements AutoCloseable {
+
+    // default bound on requests in flight
+    public static final int DEFAULT_MAX_PENDING = 1024;
+
+    private final WordNet wordnet;
+    private final Outcast outcast;
+    private final Executor executor;
+
+    // true if the service created executor and must shut it down
+    private final boolean ownsExecutor;
+
+    // one permit per request that may be in flight
+    private final Semaphore pending;
+    private final int maxPending;
+
+    // longest wait for a slot in nanoseconds, or -1 to wait as long as it
+    // takes
+    private final long timeout;
+
+    // searches in flight, keyed by unordered noun pair
+    private final ConcurrentHashMap<Pair, CompletableFuture<Long>> inflight =
+            new ConcurrentHashMap<Pair, CompletableFuture<Long>>();
+
+    // counters
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    // constructor takes the WordNet to query, and runs requests on virtual
+    // threads (a fixed pool of one thread per processor on JVMs without
+    // them) with DEFAULT_MAX_PENDING requests in flight
+    public WordNetService(WordNet wordnet) {
+        this(wordnet, null, DEFAULT_MAX_PENDING);
+    }
+
+    // constructor takes the WordNet to query, the executor to run requests
+    // on (null for the default, which close() shuts down) and the most
+    // requests in flight at once
+    public WordNetService(WordNet wordnet, Executor executor, int maxPending) {
+        this(wordnet, executor, maxPending, -1);
+    }
+
+    // constructor takes the WordNet to query, the executor to run requests
+    // on (null for the default), the most requests in flight at once, and
+    // the longest a caller waits for one of them to finish before its
+    // request is rejected
+    public WordNetService(WordNet wordnet, Executor executor, int maxPending,
+                          long timeout, TimeUnit unit) {
+        this(wordnet, executor, maxPending, checkedNanos(timeout, unit));
+    }
+
+    // helper constructor that takes the timeout in nanoseconds, or -1
+    private WordNetService(WordNet wordnet, Executor executor, int maxPending, long timeout) {
+        if (wordnet == null || maxPending < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.wordnet = wordnet;
+        this.outcast = new Outcast(wordnet);
+        this.ownsExecutor = executor == null;
+        this.executor = executor == null ? defaultExecutor() : executor;
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+        this.timeout = timeout;
+    }
+
+    // helper method that converts a timeout to nanoseconds, throwing unless
+    // it is a wait of zero or more
+    private static long checkedNanos(long timeout, TimeUnit unit) {
+        if (timeout < 0 || unit == null) {
+            throw new IllegalArgumentException();
+        }
+        return unit.toNanos(timeout);
+    }
+
+    // an executor that starts a virtual thread per task, or null if this JVM
+    // does not have virtual threads
+    public static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // helper method that returns virtual threads, or daemon platform threads,
+    // one per processor, if there are none
+    private static ExecutorService defaultExecutor() {
+        ExecutorService virtual = virtualThreads();
+        if (virtual != null) {
+            return virtual;
+        }
+        return Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), task -> {
+                    Thread thread = new Thread(task, "wordnet-service");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // distance between noun1 and noun2, as WordNet.distance() computes it.
+    // throws an IllegalArgumentException right away if either is not a noun.
+    // unless it joins a search for the same pair already in flight, this
+    // blocks while maxPending requests are in flight, until one finishes or
+    // the timeout passes and the future fails with a
+    // RejectedExecutionException
+    public CompletableFuture<Integer> distance(String noun1, String noun2) {
+        return search(noun1, noun2).thenApply(PairCache::length);
+    }
+
+    // shortest common ancestor of noun1 and noun2, as WordNet.sca() computes
+    // it. throws an IllegalArgumentException right away if either is not a
+    // noun. blocks for a free slot the way distance() does
+    public CompletableFuture<String> sca(String noun1, String noun2) {
+        return search(noun1, noun2).thenApply(
+                result -> wordnet.synset(PairCache.ancestor(result)));
+    }
+
+    // outcast of nouns, as Outcast.outcast() computes it. nouns is copied, so
+    // the caller may reuse the array. throws an IllegalArgumentException right
+    // away if nouns is null. outcasts are never joined, so this always takes
+    // a slot, and blocks for one while maxPending requests are in flight,
+    // failing with a RejectedExecutionException once the timeout passes
+    public CompletableFuture<String> outcast(String[] nouns) {
+        if (nouns == null) {
+            throw new IllegalArgumentException();
+        }
+        String[] copy = nouns.clone();
+        submitted.increment();
+        CompletableFuture<String> answer = new CompletableFuture<String>();
+        Throwable failed = run(() -> answer.complete(outcast.outcast(copy)), answer);
+        if (failed != null) {
+            answer.completeExceptionally(failed);
+        }
+        return answer;
+    }
+
+    // helper method that returns the packed length and ancestor of noun1 and
+    // noun2, joining a search for the same pair already in flight or starting
+    // a new one
+    private CompletableFuture<Long> search(String noun1, String noun2) {
+        if (!wordnet.isNoun(noun1) || !wordnet.isNoun(noun2)) {
+            throw new IllegalArgumentException();
+        }
+        submitted.increment();
+        Pair key = new Pair(noun1, noun2);
+        CompletableFuture<Long> running = inflight.get(key);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+        CompletableFuture<Long> search = new CompletableFuture<Long>();
+        running = inflight.putIfAbsent(key, search);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+        // removed before it completes, so no caller can join a finished search
+        Throwable failed = run(() -> {
+            long result;
+            try {
+                result = wordnet.lengthAndAncestor(key.first, key.second);
+            }
+            finally {
+                inflight.remove(key, search);
+            }
+            search.complete(result);
+        }, search);
+        if (failed != null) {
+            inflight.remove(key, search);
+            search.completeExceptionally(failed);
+        }
+        return search;
+    }
+
+    // helper method that waits for a free slot and runs task on the
+    // executor, completing answer exceptionally if task throws. returns null
+    // once task is started, or else the exception that kept it from starting
+    // (an interrupt while waiting, no slot freeing up within the timeout, or
+    // the executor rejecting it), leaving answer for the caller to clean up
+    // after and complete
+    private Throwable run(Runnable task, CompletableFuture<?> answer) {
+        try {
+            if (timeout < 0) {
+                pending.acquire();
+            }
+            else if (!pending.tryAcquire(timeout, TimeUnit.NANOSECONDS)) {
+                return new RejectedExecutionException(
+                        maxPending + " requests still in flight after " + timeout + " ns");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                }
+                catch (Throwable e) {
+                    answer.completeExceptionally(e);
+                }
+                finally {
+                    pending.release();
+                    completed.increment();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            pending.release();
+            return e;
+        }
+        return null;
+    }
+
+    // number of requests accepted so far
+    public long submitted() {
+        return submitted.sum();
+    }
+
+    // number of requests answered by joining a search already in flight
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    // number of requests in flight right now
+    public int pending() {
+        return maxPending - pending.availablePermits();
+    }
+
+    // shuts down the executor if the service created it; requests already
+    // running still finish
+    public void close() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    public String toString() {
+        return "WordNetService: " + submitted() + " requests, " + coalesced()
+                + " coalesced, " + completed.sum() + " run, " + pending() + " in flight";
+    }
+
+    // test client: java WordNetService synsets.txt hypernyms.txt
+    // checks that a request whose task is never started, because the
+    // executor rejects it, the caller is interrupted while waiting for a
+    // slot or no slot frees up within the timeout, fails on its own and
+    // leaves nothing behind for the next request for the same pair to join
+    public static void main(String[] args) {
+        WordNet wordnet = new WordNet(args[0], args[1]);
+        String a = null;
+        String b = null;
+        for (String noun : wordnet.nouns()) {
+            a = b;
+            b = noun;
+        }
+        int expected = wordnet.distance(a, b);
+        boolean[] reject = { true };
+        Executor flaky = task -> {
+            if (reject[0]) {
+                reject[0] = false;
+                throw new RejectedExecutionException("rejected once");
+            }
+            task.run();
+        };
+        try (WordNetService service = new WordNetService(wordnet, flaky, 4)) {
+            CompletableFuture<Integer> rejected = service.distance(a, b);
+            System.out.println("rejected: " + failure(rejected));
+            int retried = service.distance(b, a).join();
+            System.out.println("retried: " + retried + " (expected " + expected + "), "
+                                       + service.coalesced() + " coalesced, "
+                                       + service.inflight.size() + " in flight");
+
+            Thread.currentThread().interrupt();
+            CompletableFuture<Integer> interrupted = service.distance(a, b);
+            boolean flag = Thread.interrupted();
+            System.out.println("interrupted: " + failure(interrupted) + ", flag kept " + flag);
+            System.out.println("retried: " + service.distance(a, b).join() + ", "
+                                       + service.coalesced() + " coalesced, "
+                                       + service.inflight.size() + " in flight");
+            System.out.println(service);
+        }
+
+        // one slot, held by a request whose task waits for the latch
+        CountDownLatch latch = new CountDownLatch(1);
+        Executor stalled = task -> new Thread(() -> {
+            try {
+                latch.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.run();
+        }).start();
+        try (WordNetService service = new WordNetService(
+                wordnet, stalled, 1, 10, TimeUnit.MILLISECONDS)) {
+            CompletableFuture<Integer> holding = service.distance(a, b);
+            CompletableFuture<Integer> timedOut = service.distance(a, a);
+            System.out.println("timed out: " + failure(timedOut) + ", "
+                                       + service.inflight.size() + " in flight");
+            latch.countDown();
+            System.out.println("held: " + holding.join() + ", retried: "
+                                       + service.distance(a, a).join());
+            System.out.println(service);
+        }
+    }
+
+    // helper method for the test client that names the exception answer
+    // failed with, or returns "not failed"
+    private static String failure(CompletableFuture<?> answer) {
+        try {
+            answer.join();
+            return "not failed";
+        }
+        catch (CompletionException e) {
+            return e.getCause().getClass().getSimpleName();
+        }
+    }
+
+    // unordered pair of nouns, so that (a, b) and (b, a) share one search
+    private static final class Pair {
+        private final String first;
+        private final String second;
+
+        private Pair(String noun1, String noun2) {
+            boolean ordered = noun1.compareTo(noun2) <= 0;
+            this.first = ordered ? noun1 : noun2;
+            this.second = ordered ? noun2 : noun1;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof Pair)) {
+                return false;
+            }
+            Pair that = (Pair) other;
+            return first.equals(that.first) && second.equals(that.second);
+        }
+
+        public int hashCode() {
+            return 31 * first.hashCode() + second.hashCode();
+        }
+    }
+}
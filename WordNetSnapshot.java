@@ -0,0 +1,200 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// versioned, checksummed binary snapshot of everything a WordNet needs: the
+// synset strings and glosses, the sorted noun dictionary with its synset id
+// postings, the compressed sparse rows of the hypernym digraph and the root.
+// the digraph was checked to be a rooted DAG when the snapshot was written,
+// so loading one skips both parsing and validation. all numbers are big
+// endian. the layout is
+//
+//   int magic, int version, int V, int E, int root, int nouns, int postings
+//   int[V + 1] offsets, int[E] targets
+//   strings synsets (V of them), strings glosses (V of them)
+//   strings nouns (sorted), int[nouns + 1] posting offsets, int[postings] ids
+//   long CRC32 of every byte before it
+//
+// where a block of n strings is int[n + 1] byte offsets followed by the UTF-8
+// bytes of all n strings back to back
+final class WordNetSnapshot {
+
+    // "WNSS"
+    private static final int MAGIC = 0x574E5353;
+
+    // bumped whenever the layout changes; older snapshots are rejected
+    static final int VERSION = 1;
+
+    // synsets[id] and glosses[id], as in synsets.txt
+    final String[] synsets;
+    final String[] glosses;
+
+    // distinct nouns in sorted order; the synset ids of nouns[k] are
+    // postings[postingOffsets[k]] through postings[postingOffsets[k + 1] - 1]
+    final String[] nouns;
+    final int[] postingOffsets;
+    final int[] postings;
+
+    // the hypernym digraph and its root
+    final CompactDigraph digraph;
+    final int root;
+
+    WordNetSnapshot(String[] synsets, String[] glosses, String[] nouns,
+                    int[] postingOffsets, int[] postings,
+                    CompactDigraph digraph, int root) {
+        this.synsets = synsets;
+        this.glosses = glosses;
+        this.nouns = nouns;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+        this.digraph = digraph;
+        this.root = root;
+    }
+
+    // writes this snapshot to file, replacing it if it exists
+    void write(Path file) {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(out, 1 << 16), new CRC32());
+            DataOutputStream data = new DataOutputStream(checked);
+            int numOfVertices = digraph.V();
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(numOfVertices);
+            data.writeInt(digraph.E());
+            data.writeInt(root);
+            data.writeInt(nouns.length);
+            data.writeInt(postings.length);
+            for (int v = 0; v < numOfVertices; v++) {
+                data.writeInt(digraph.firstEdge(v));
+            }
+            data.writeInt(digraph.E());
+            for (int e = 0; e < digraph.E(); e++) {
+                data.writeInt(digraph.target(e));
+            }
+            writeStrings(data, synsets);
+            writeStrings(data, glosses);
+            writeStrings(data, nouns);
+            writeInts(data, postingOffsets);
+            writeInts(data, postings);
+            data.flush();
+            // the checksum itself is not part of what it covers
+            long checksum = checked.getChecksum().getValue();
+            new DataOutputStream(checked).writeLong(checksum);
+            checked.flush();
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + file, e);
+        }
+    }
+
+    // maps file, checks its magic number, version and checksum, and reads it
+    static WordNetSnapshot read(Path file) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + " is too large to map");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not open " + file, e);
+        }
+        if (buffer.limit() < 7 * 4 + 8 || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException(file + " is not a WordNet snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException(
+                    file + " is snapshot version " + buffer.getInt(4)
+                            + ", expected " + VERSION);
+        }
+        int end = buffer.limit() - 8;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(end));
+        if (crc.getValue() != buffer.getLong(end)) {
+            throw new IllegalArgumentException(file + " is corrupt: bad checksum");
+        }
+        try {
+            buffer.position(8);
+            int numOfVertices = buffer.getInt();
+            int numOfEdges = buffer.getInt();
+            int root = buffer.getInt();
+            int numOfNouns = buffer.getInt();
+            int numOfPostings = buffer.getInt();
+            int[] offsets = readInts(buffer, numOfVertices + 1);
+            int[] targets = readInts(buffer, numOfEdges);
+            String[] synsets = readStrings(buffer, numOfVertices);
+            String[] glosses = readStrings(buffer, numOfVertices);
+            String[] nouns = readStrings(buffer, numOfNouns);
+            int[] postingOffsets = readInts(buffer, numOfNouns + 1);
+            int[] postings = readInts(buffer, numOfPostings);
+            if (buffer.position() != end) {
+                throw new IllegalArgumentException(file + " is corrupt: bad length");
+            }
+            return new WordNetSnapshot(synsets, glosses, nouns, postingOffsets,
+                                       postings, new CompactDigraph(offsets, targets),
+                                       root);
+        }
+        catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IllegalArgumentException(file + " is corrupt", e);
+        }
+    }
+
+    // helper method that writes an int array without its length
+    private static void writeInts(DataOutputStream data, int[] values)
+            throws IOException {
+        for (int value : values) {
+            data.writeInt(value);
+        }
+    }
+
+    // helper method that writes a block of strings
+    private static void writeStrings(DataOutputStream data, String[] strings)
+            throws IOException {
+        byte[][] bytes = new byte[strings.length][];
+        int offset = 0;
+        data.writeInt(offset);
+        for (int i = 0; i < strings.length; i++) {
+            bytes[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            offset += bytes[i].length;
+            data.writeInt(offset);
+        }
+        for (byte[] b : bytes) {
+            data.write(b);
+        }
+    }
+
+    // helper method that reads count ints with one bulk copy
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * count);
+        return values;
+    }
+
+    // helper method that reads a block of count strings
+    private static String[] readStrings(ByteBuffer buffer, int count) {
+        int[] offsets = readInts(buffer, count + 1);
+        byte[] bytes = new byte[offsets[count]];
+        buffer.get(bytes);
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i],
+                                    StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// multi-threaded stress test for the concurrent query mode of WordNet. it
+// answers a fixed set of random noun pairs on one thread first, then has many
+// platform threads (and virtual threads, when the JVM has them) hammer one
+// shared WordNet with the same pairs and checks every answer against the
+// single-threaded ones, with the plain bfs, with the ancestor label index and
+// with the result cache. when several synsets tie for the shortest common
+// ancestor, the bfs and the label index may pick different ones, so the
+// single-threaded answers are recomputed whenever the mode changes
+public class WordNetStress {
+
+    // the shared WordNet and the pairs every thread asks about
+    private final WordNet wordnet;
+    private final String[] first;
+    private final String[] second;
+
+    // single-threaded answers
+    private final int[] distances;
+    private final String[] ancestors;
+
+    // constructor picks count random pairs of nouns and answers them on the
+    // calling thread
+    public WordNetStress(WordNet wordnet, int count, long seed) {
+        this.wordnet = wordnet;
+        List<String> nouns = new ArrayList<String>();
+        for (String noun : wordnet.nouns()) {
+            nouns.add(noun);
+        }
+        // sorted, so the same seed always picks the same pairs
+        Collections.sort(nouns);
+        Random random = new Random(seed);
+        first = new String[count];
+        second = new String[count];
+        distances = new int[count];
+        ancestors = new String[count];
+        for (int i = 0; i < count; i++) {
+            first[i] = nouns.get(random.nextInt(nouns.size()));
+            second[i] = nouns.get(random.nextInt(nouns.size()));
+        }
+        expect();
+    }
+
+    // answers every pair on the calling thread, to check the threads against
+    public void expect() {
+        for (int i = 0; i < first.length; i++) {
+            distances[i] = wordnet.distance(first[i], second[i]);
+            ancestors[i] = wordnet.sca(first[i], second[i]);
+        }
+    }
+
+    // runs every pair once per task on executor, each task starting at a
+    // different pair and alternating the argument order, and returns the
+    // number of answers that differ from the single-threaded ones
+    public int run(ExecutorService executor, int tasks) throws Exception {
+        AtomicInteger mismatches = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < tasks; t++) {
+            final int offset = t * 7919;
+            futures.add(executor.submit(() -> {
+                for (int k = 0; k < first.length; k++) {
+                    int i = (offset + k) % first.length;
+                    boolean swap = ((offset + k) & 1) == 1;
+                    String a = swap ? second[i] : first[i];
+                    String b = swap ? first[i] : second[i];
+                    if (wordnet.distance(a, b) != distances[i]
+                            || !wordnet.sca(a, b).equals(ancestors[i])) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return mismatches.get();
+    }
+
+    // helper method that runs one round of the test and prints its outcome
+    private int round(String name, ExecutorService executor, int tasks)
+            throws Exception {
+        long start = System.nanoTime();
+        int mismatches = run(executor, tasks);
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(name + ": " + tasks + " tasks x " + first.length
+                                   + " pairs, " + mismatches + " mismatches, "
+                                   + millis + " ms");
+        return mismatches;
+    }
+
+    // test client: java WordNetStress synsets.txt hypernyms.txt [threads] [pairs]
+    public static void main(String[] args) throws Exception {
+        WordNet wordnet = new WordNet(args[0], args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                                      : Runtime.getRuntime().availableProcessors() * 2;
+        int pairs = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+        WordNetStress stress = new WordNetStress(wordnet, pairs, 42);
+
+        ExecutorService platform = Executors.newFixedThreadPool(threads);
+        ExecutorService virtual = WordNetService.virtualThreads();
+        int mismatches = 0;
+        String[] modes = { "bfs", "cached", "indexed" };
+        for (String mode : modes) {
+            if (mode.equals("cached")) {
+                wordnet.enableCache(Math.max(1, pairs / 4), PairCache.Policy.LRU);
+            }
+            if (mode.equals("indexed")) {
+                wordnet.disableCache();
+                wordnet.buildIndex();
+                stress.expect();
+            }
+            mismatches += stress.round(mode + ", platform threads", platform, threads);
+            if (virtual != null) {
+                mismatches += stress.round(mode + ", virtual threads", virtual,
+                                           threads * 8);
+            }
+        }
+        platform.shutdown();
+        platform.awaitTermination(1, TimeUnit.MINUTES);
+        if (virtual != null) {
+            virtual.shutdown();
+        }
+        System.out.println(mismatches == 0 ? "ok" : "FAILED");
+        if (mismatches != 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import wordnet.bench.Subject;
+
+// the default-package side of the benchmarks: implements wordnet.bench.Subject
+// with the real WordNet, ShortestCommonAncestor and Outcast, which the
+// benchmark package cannot name itself
+public class BenchmarkSubject implements Subject {
+
+    private WordNet wordnet;
+    private ShortestCommonAncestor sca;
+    private Outcast outcast;
+
+    // synset ids of every noun and the root's synset, for picking inputs
+    private HashMap<String, List<Integer>> ids;
+    private String rootSynset;
+    private int numOfVertices;
+
+    public void generate(int V, double branching, double multiParent, long seed,
+                         Path synsets, Path hypernyms) {
+        new TaxonomyGenerator(V, branching, multiParent, seed).write(synsets, hypernyms);
+    }
+
+    public Object construct(String synsets, String hypernyms) {
+        return new WordNet(synsets, hypernyms);
+    }
+
+    public void load(String synsets, String hypernyms) {
+        wordnet = new WordNet(synsets, hypernyms);
+        outcast = new Outcast(wordnet);
+        WordNetParser.Synsets parsed = WordNetParser.parseSynsets(synsets);
+        numOfVertices = parsed.count;
+        sca = new ShortestCommonAncestor(
+                WordNetParser.parseHypernyms(hypernyms, parsed.count));
+        rootSynset = parsed.synsets[sca.root()];
+        ids = new HashMap<String, List<Integer>>();
+        for (int k = 0; k < parsed.nouns.length; k++) {
+            ids.computeIfAbsent(parsed.nouns[k], noun -> new ArrayList<Integer>())
+               .add(parsed.nounIds[k]);
+        }
+    }
+
+    public List<String> nouns() {
+        List<String> nouns = new ArrayList<String>();
+        for (String noun : wordnet.nouns()) {
+            nouns.add(noun);
+        }
+        return nouns;
+    }
+
+    public List<Integer> synsetIds(String noun) {
+        return ids.get(noun);
+    }
+
+    public boolean isNoun(String word) {
+        return wordnet.isNoun(word);
+    }
+
+    public int distance(String noun1, String noun2) {
+        return wordnet.distance(noun1, noun2);
+    }
+
+    public String sca(String noun1, String noun2) {
+        return wordnet.sca(noun1, noun2);
+    }
+
+    public boolean crossesRoot(String noun1, String noun2) {
+        return wordnet.sca(noun1, noun2).equals(rootSynset);
+    }
+
+    public int vertices() {
+        return numOfVertices;
+    }
+
+    public int length(int v, int w) {
+        return sca.length(v, w);
+    }
+
+    public int lengthSubset(Iterable<Integer> subsetA, Iterable<Integer> subsetB) {
+        return sca.lengthSubset(subsetA, subsetB);
+    }
+
+    public String outcast(String[] nouns) {
+        return outcast.outcast(nouns);
+    }
+}
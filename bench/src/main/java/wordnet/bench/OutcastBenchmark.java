@@ -0,0 +1,57 @@
+package wordnet.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Outcast.outcast() on groups of n random nouns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutcastBenchmark {
+
+    /** Groups of n nouns, drawn with a fixed seed. */
+    @State(Scope.Benchmark)
+    public static class Groups {
+        private static final int GROUPS = 16;
+
+        @Param({ "5", "50", "500" })
+        public int n;
+
+        public String[][] groups;
+
+        @Setup(Level.Trial)
+        public void setUp(Taxonomy t) {
+            List<String> nouns = t.subject.nouns();
+            Random random = new Random(42);
+            groups = new String[GROUPS][n];
+            for (String[] group : groups) {
+                for (int i = 0; i < n; i++) {
+                    group[i] = nouns.get(random.nextInt(nouns.size()));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public String outcast(Taxonomy t, Groups g, Taxonomy.Cursor c) {
+        return t.subject.outcast(g.groups[c.next() % Groups.GROUPS]);
+    }
+}
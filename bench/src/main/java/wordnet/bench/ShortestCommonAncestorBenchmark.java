@@ -0,0 +1,35 @@
+package wordnet.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ShortestCommonAncestor on its own: length() on random single vertices and
+ * lengthSubset() on the synset ids of multi-synset nouns.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortestCommonAncestorBenchmark {
+
+    @Benchmark
+    public int length(Taxonomy t, Taxonomy.Cursor c) {
+        int[] pair = t.vertices[c.next()];
+        return t.subject.length(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public int lengthSubset(Taxonomy t, Taxonomy.Cursor c) {
+        int k = c.next();
+        return t.subject.lengthSubset(t.subsetsA.get(k), t.subsetsB.get(k));
+    }
+}
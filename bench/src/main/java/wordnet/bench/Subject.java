@@ -0,0 +1,74 @@
+package wordnet.bench;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The operations the benchmarks measure. JMH only runs benchmarks in a named
+ * package, and a named package cannot refer to the classes in the default
+ * package, so the classes under test are reached through this interface,
+ * implemented by {@code BenchmarkSubject} in the default package. Every
+ * benchmark only ever sees that one implementation, so the interface calls
+ * are monomorphic and get inlined.
+ */
+public interface Subject {
+
+    /**
+     * Returns a new instance of the default-package implementation.
+     */
+    static Subject create() {
+        try {
+            return (Subject) Class.forName("BenchmarkSubject")
+                                  .getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkSubject is missing", e);
+        }
+    }
+
+    /**
+     * Writes a synthetic taxonomy with {@code TaxonomyGenerator}.
+     */
+    void generate(int V, double branching, double multiParent, long seed,
+                  Path synsets, Path hypernyms);
+
+    /**
+     * Constructs and returns a new WordNet, without keeping it.
+     */
+    Object construct(String synsets, String hypernyms);
+
+    /**
+     * Loads the WordNet, ShortestCommonAncestor and Outcast the other
+     * methods query.
+     */
+    void load(String synsets, String hypernyms);
+
+    List<String> nouns();
+
+    /**
+     * The synset ids of the noun, in file order.
+     */
+    List<Integer> synsetIds(String noun);
+
+    boolean isNoun(String word);
+
+    int distance(String noun1, String noun2);
+
+    String sca(String noun1, String noun2);
+
+    /**
+     * Is the root the shortest common ancestor of the two nouns?
+     */
+    boolean crossesRoot(String noun1, String noun2);
+
+    /**
+     * Number of synsets, which is also the number of vertices.
+     */
+    int vertices();
+
+    int length(int v, int w);
+
+    int lengthSubset(Iterable<Integer> subsetA, Iterable<Integer> subsetB);
+
+    String outcast(String[] nouns);
+}
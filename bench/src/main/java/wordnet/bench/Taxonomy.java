@@ -0,0 +1,192 @@
+package wordnet.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A synthetic WordNet-like taxonomy, generated into a temporary directory and
+ * loaded once per trial, with the query inputs the benchmarks cycle through.
+ * Noun pairs are drawn with a fixed seed and sorted into the kinds of query
+ * the benchmarks compare:
+ * <ul>
+ * <li>near: sibling synsets, a distance of 2 below the root</li>
+ * <li>far: the longest quarter of the distances that do not cross the root</li>
+ * <li>root: pairs whose shortest common ancestor is the root</li>
+ * <li>multi: nouns that belong to more than one synset, so every query is a
+ * subset query</li>
+ * </ul>
+ * Near, far and root pairs only use nouns that belong to a single synset.
+ */
+@State(Scope.Benchmark)
+public class Taxonomy {
+
+    /** Number of inputs of each kind; a power of two. */
+    public static final int INPUTS = 1024;
+
+    @Param({ "20000", "100000" })
+    public int synsets;
+
+    @Param({ "4" })
+    public double branching;
+
+    @Param({ "0.2" })
+    public double multiParent;
+
+    public Subject subject;
+    public String synsetsFile;
+    public String hypernymsFile;
+
+    public String[][] near;
+    public String[][] far;
+    public String[][] root;
+    public String[][] multi;
+
+    /** Nouns, and words that are not nouns. */
+    public String[] hits;
+    public String[] misses;
+
+    /** Random vertex pairs, and the synset ids of the multi pairs. */
+    public int[][] vertices;
+    public List<List<Integer>> subsetsA;
+    public List<List<Integer>> subsetsB;
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("wordnet-bench");
+        Path synsetsPath = dir.resolve("synsets.txt");
+        Path hypernymsPath = dir.resolve("hypernyms.txt");
+        subject = Subject.create();
+        subject.generate(synsets, branching, multiParent, 42, synsetsPath, hypernymsPath);
+        synsetsFile = synsetsPath.toString();
+        hypernymsFile = hypernymsPath.toString();
+        subject.load(synsetsFile, hypernymsFile);
+        pick(new Random(42));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir.resolve("synsets.txt"));
+        Files.deleteIfExists(dir.resolve("hypernyms.txt"));
+        Files.deleteIfExists(dir);
+    }
+
+    private void pick(Random random) {
+        List<String> single = new ArrayList<>();
+        List<String> polysemous = new ArrayList<>();
+        for (String noun : subject.nouns()) {
+            (subject.synsetIds(noun).size() == 1 ? single : polysemous).add(noun);
+        }
+        List<String[]> nearPairs = new ArrayList<>();
+        List<String[]> rootPairs = new ArrayList<>();
+        List<String[]> otherPairs = new ArrayList<>();
+        List<Integer> otherDistances = new ArrayList<>();
+        for (int attempt = 0; attempt < 64 * INPUTS; attempt++) {
+            if (nearPairs.size() == INPUTS && rootPairs.size() == INPUTS
+                    && otherPairs.size() == 4 * INPUTS) {
+                break;
+            }
+            // the generator gives consecutive synsets the same hypernym
+            int i = 1 + random.nextInt(synsets - 2);
+            String[] siblings = { "s" + i, "s" + (i + 1) };
+            if (nearPairs.size() < INPUTS && isSingle(siblings)
+                    && subject.distance(siblings[0], siblings[1]) == 2
+                    && !subject.crossesRoot(siblings[0], siblings[1])) {
+                nearPairs.add(siblings);
+            }
+            String[] pair = { any(single, random), any(single, random) };
+            if (subject.crossesRoot(pair[0], pair[1])) {
+                if (rootPairs.size() < INPUTS) {
+                    rootPairs.add(pair);
+                }
+            }
+            else if (otherPairs.size() < 4 * INPUTS) {
+                otherPairs.add(pair);
+                otherDistances.add(subject.distance(pair[0], pair[1]));
+            }
+        }
+        Integer[] order = new Integer[otherPairs.size()];
+        Arrays.setAll(order, k -> k);
+        Arrays.sort(order, (a, b) -> otherDistances.get(b) - otherDistances.get(a));
+        List<String[]> farPairs = new ArrayList<>();
+        for (int k = 0; k < Math.min(INPUTS, (order.length + 3) / 4); k++) {
+            farPairs.add(otherPairs.get(order[k]));
+        }
+        List<String[]> multiPairs = new ArrayList<>();
+        if (polysemous.size() > 1) {
+            while (multiPairs.size() < INPUTS) {
+                String[] pair = { any(polysemous, random), any(polysemous, random) };
+                if (!pair[0].equals(pair[1])) {
+                    multiPairs.add(pair);
+                }
+            }
+        }
+        near = fill(nearPairs, "near");
+        far = fill(farPairs, "far");
+        root = fill(rootPairs, "root");
+        multi = fill(multiPairs, "multi");
+
+        hits = new String[INPUTS];
+        misses = new String[INPUTS];
+        vertices = new int[INPUTS][];
+        subsetsA = new ArrayList<>();
+        subsetsB = new ArrayList<>();
+        for (int k = 0; k < INPUTS; k++) {
+            hits[k] = any(single, random);
+            misses[k] = hits[k] + "_missing";
+            vertices[k] = new int[] { random.nextInt(synsets), random.nextInt(synsets) };
+            subsetsA.add(subject.synsetIds(multi[k][0]));
+            subsetsB.add(subject.synsetIds(multi[k][1]));
+        }
+    }
+
+    private boolean isSingle(String[] pair) {
+        for (String noun : pair) {
+            if (!subject.isNoun(noun) || subject.synsetIds(noun).size() != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String any(List<String> nouns, Random random) {
+        return nouns.get(random.nextInt(nouns.size()));
+    }
+
+    // repeats the pairs that were found until there are INPUTS of them
+    private static String[][] fill(List<String[]> pairs, String kind) {
+        if (pairs.isEmpty()) {
+            throw new IllegalStateException("the taxonomy has no " + kind + " pairs");
+        }
+        String[][] filled = new String[INPUTS][];
+        for (int k = 0; k < INPUTS; k++) {
+            filled[k] = pairs.get(k % pairs.size());
+        }
+        return filled;
+    }
+
+    /** Per-thread position in the input arrays. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        /** Index of the next input, cycling through all INPUTS of them. */
+        public int next() {
+            next = (next + 1) & (INPUTS - 1);
+            return next;
+        }
+    }
+}
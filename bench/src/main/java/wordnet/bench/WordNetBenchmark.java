@@ -0,0 +1,89 @@
+package wordnet.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * WordNet construction, isNoun(), and distance() and sca() on near, far,
+ * root-crossing and multi-synset noun pairs. Run with {@code -prof gc} for
+ * the allocation rate of each query.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordNetBenchmark {
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object construct(Taxonomy t) {
+        return t.subject.construct(t.synsetsFile, t.hypernymsFile);
+    }
+
+    @Benchmark
+    public boolean isNounHit(Taxonomy t, Taxonomy.Cursor c) {
+        return t.subject.isNoun(t.hits[c.next()]);
+    }
+
+    @Benchmark
+    public boolean isNounMiss(Taxonomy t, Taxonomy.Cursor c) {
+        return t.subject.isNoun(t.misses[c.next()]);
+    }
+
+    @Benchmark
+    public int distanceNear(Taxonomy t, Taxonomy.Cursor c) {
+        String[] pair = t.near[c.next()];
+        return t.subject.distance(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public int distanceFar(Taxonomy t, Taxonomy.Cursor c) {
+        String[] pair = t.far[c.next()];
+        return t.subject.distance(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public int distanceRoot(Taxonomy t, Taxonomy.Cursor c) {
+        String[] pair = t.root[c.next()];
+        return t.subject.distance(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public int distanceMulti(Taxonomy t, Taxonomy.Cursor c) {
+        String[] pair = t.multi[c.next()];
+        return t.subject.distance(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public String scaNear(Taxonomy t, Taxonomy.Cursor c) {
+        String[] pair = t.near[c.next()];
+        return t.subject.sca(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public String scaFar(Taxonomy t, Taxonomy.Cursor c) {
+        String[] pair = t.far[c.next()];
+        return t.subject.sca(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public String scaRoot(Taxonomy t, Taxonomy.Cursor c) {
+        String[] pair = t.root[c.next()];
+        return t.subject.sca(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public String scaMulti(Taxonomy t, Taxonomy.Cursor c) {
+        String[] pair = t.multi[c.next()];
+        return t.subject.sca(pair[0], pair[1]);
+    }
+}